@@ -0,0 +1,123 @@
+package com.github.rfsmassacre.heavenlibrary.benchmarks;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Stand-in plugin so the managers can be benchmarked without a running server.
+ *
+ * Uses the constructor JavaPlugin keeps for testing, backed by a server proxy that only answers with a logger and
+ * default values.
+ */
+@SuppressWarnings("deprecation")
+final class BenchmarkPlugin extends JavaPlugin
+{
+    private static final Logger LOGGER = Logger.getLogger("Benchmark");
+    private static final Server SERVER = (Server) Proxy.newProxyInstance(Server.class.getClassLoader(),
+            new Class<?>[]{Server.class}, (proxy, method, args) ->
+    {
+        Class<?> type = method.getReturnType();
+        if (type == Logger.class)
+        {
+            return LOGGER;
+        }
+        else if (type == String.class)
+        {
+            return "Benchmark";
+        }
+        else if (type == boolean.class)
+        {
+            return false;
+        }
+        else if (type == int.class || type == long.class || type == short.class || type == byte.class)
+        {
+            return 0;
+        }
+        else if (type == double.class || type == float.class)
+        {
+            return 0.0;
+        }
+
+        return null;
+    });
+
+    static
+    {
+        Bukkit.setServer(SERVER);
+    }
+
+    private BenchmarkPlugin(File dataFolder)
+    {
+        super(new JavaPluginLoader(SERVER), new PluginDescriptionFile("Benchmark", "1.0",
+                BenchmarkPlugin.class.getName()), dataFolder, new File(dataFolder, "Benchmark.jar"));
+    }
+
+    /**
+     * Create plugin with a brand new temporary data folder.
+     *
+     * @return Plugin.
+     * @throws IOException If the folder could not be created.
+     */
+    static BenchmarkPlugin create() throws IOException
+    {
+        return new BenchmarkPlugin(Files.createTempDirectory("heavenlibrary-bench").toFile());
+    }
+
+    /**
+     * Delete the data folder and everything in it.
+     */
+    void cleanUp()
+    {
+        delete(getDataFolder());
+    }
+
+    /**
+     * Synthetic players with a fixed seed so every run works on the same data.
+     *
+     * @param amount Amount of players.
+     * @return Players.
+     */
+    static List<RacePlayer> players(int amount)
+    {
+        Random random = new Random(amount);
+        String[] races = new String[]{"human", "vampire", "werewolf", "elf", "angel", "demon"};
+        List<RacePlayer> players = new ArrayList<>(amount);
+        for (int index = 0; index < amount; index++)
+        {
+            RacePlayer racePlayer = new RacePlayer(new UUID(random.nextLong(), random.nextLong()), "Player" + index,
+                    races[random.nextInt(races.length)]);
+            racePlayer.setLevel(1 + random.nextInt(100));
+            players.add(racePlayer);
+        }
+
+        return players;
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
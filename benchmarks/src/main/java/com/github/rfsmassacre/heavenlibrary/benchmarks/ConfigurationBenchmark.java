@@ -0,0 +1,63 @@
+package com.github.rfsmassacre.heavenlibrary.benchmarks;
+
+import com.github.rfsmassacre.heavenlibrary.files.configs.Configuration;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationBenchmark
+{
+    private BenchmarkPlugin plugin;
+    private Configuration configuration;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        this.plugin = BenchmarkPlugin.create();
+        this.configuration = new Configuration(plugin, "", "config.yml");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        plugin.cleanUp();
+    }
+
+    @Benchmark
+    public String getString()
+    {
+        return configuration.getString("storage.mysql.host");
+    }
+
+    @Benchmark
+    public int getInt()
+    {
+        return configuration.getInt("storage.batch-size");
+    }
+
+    @Benchmark
+    public boolean getBoolean()
+    {
+        return configuration.getBoolean("storage.mysql.ssl");
+    }
+
+    @Benchmark
+    public long getLong()
+    {
+        return configuration.getLong("effects.budget-nanos");
+    }
+
+    @Benchmark
+    public List<String> getStringList()
+    {
+        return configuration.getStringList("effects.night-vision.races");
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.rfsmassacre.heavenlibrary.benchmarks;
+
+import com.clanjhoo.mythicraces.data.GsonPlayerRepository;
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GsonManagerBenchmark
+{
+    @Param({"100", "1000", "10000"})
+    public int players;
+
+    private BenchmarkPlugin plugin;
+    private GsonPlayerRepository gson;
+    private List<RacePlayer> racePlayers;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        this.plugin = BenchmarkPlugin.create();
+        this.gson = new GsonPlayerRepository(plugin);
+        this.racePlayers = BenchmarkPlugin.players(players);
+        for (RacePlayer racePlayer : racePlayers)
+        {
+            gson.write(racePlayer.getPlayerId().toString(), racePlayer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        plugin.cleanUp();
+    }
+
+    @Benchmark
+    public RacePlayer read()
+    {
+        return gson.read(nextPlayer().getPlayerId().toString());
+    }
+
+    @Benchmark
+    public void write()
+    {
+        RacePlayer racePlayer = nextPlayer();
+        gson.write(racePlayer.getPlayerId().toString(), racePlayer);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Set<RacePlayer> all()
+    {
+        return gson.all();
+    }
+
+    private RacePlayer nextPlayer()
+    {
+        next = (next + 1) % racePlayers.size();
+        return racePlayers.get(next);
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.rfsmassacre.heavenlibrary.benchmarks;
+
+import com.github.rfsmassacre.heavenlibrary.files.configs.Locale;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocaleBenchmark
+{
+    private static final String MESSAGE = "&7Migrating players from &f{from}&7 to &#55FF55{to}&7, &lplease &owait...";
+    private static final String[] HOLDERS = new String[]{"{from}", "json", "{to}", "mysql"};
+
+    private BenchmarkPlugin plugin;
+    private Locale locale;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        this.plugin = BenchmarkPlugin.create();
+        this.locale = new Locale(plugin, "", "locale.yml");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        plugin.cleanUp();
+    }
+
+    @Benchmark
+    public String format()
+    {
+        return Locale.format(MESSAGE);
+    }
+
+    @Benchmark
+    public String replaceHolders()
+    {
+        return locale.replaceHolders(MESSAGE, HOLDERS);
+    }
+
+    @Benchmark
+    public String getMessage()
+    {
+        return locale.getMessage("migrate.started", true);
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.rfsmassacre.heavenlibrary.benchmarks;
+
+import com.clanjhoo.mythicraces.data.H2PlayerRepository;
+import com.clanjhoo.mythicraces.data.PlayerRepository;
+import com.clanjhoo.mythicraces.data.SQLitePlayerRepository;
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SQLDatabaseBenchmark
+{
+    @Param({"h2", "sqlite"})
+    public String backend;
+
+    @Param({"1000", "10000"})
+    public int players;
+
+    private BenchmarkPlugin plugin;
+    private PlayerRepository repository;
+    private List<RacePlayer> racePlayers;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        this.plugin = BenchmarkPlugin.create();
+        String folder = plugin.getDataFolder().getAbsolutePath();
+        this.repository = backend.equals("h2") ? new H2PlayerRepository(folder, "players") :
+                new SQLitePlayerRepository(folder, "players");
+        this.racePlayers = BenchmarkPlugin.players(players);
+        repository.storeAll(racePlayers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        repository.close();
+        plugin.cleanUp();
+    }
+
+    @Benchmark
+    public RacePlayer query()
+    {
+        return repository.load(nextPlayer().getPlayerId());
+    }
+
+    @Benchmark
+    public void update()
+    {
+        repository.store(nextPlayer());
+    }
+
+    private RacePlayer nextPlayer()
+    {
+        next = (next + 1) % racePlayers.size();
+        return racePlayers.get(next);
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.rfsmassacre.heavenlibrary.benchmarks;
+
+import com.clanjhoo.mythicraces.data.YamlPlayerRepository;
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YamlStorageBenchmark
+{
+    @Param({"100", "1000"})
+    public int players;
+
+    private BenchmarkPlugin plugin;
+    private YamlPlayerRepository yaml;
+    private List<RacePlayer> racePlayers;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        this.plugin = BenchmarkPlugin.create();
+        this.yaml = new YamlPlayerRepository(plugin);
+        this.racePlayers = BenchmarkPlugin.players(players);
+        for (RacePlayer racePlayer : racePlayers)
+        {
+            yaml.write(racePlayer.getPlayerId().toString(), racePlayer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        plugin.cleanUp();
+    }
+
+    @Benchmark
+    public RacePlayer read()
+    {
+        return yaml.read(nextPlayer().getPlayerId().toString());
+    }
+
+    @Benchmark
+    public RacePlayer roundTrip()
+    {
+        RacePlayer racePlayer = nextPlayer();
+        String fileName = racePlayer.getPlayerId().toString();
+        yaml.write(fileName, racePlayer);
+        return yaml.read(fileName);
+    }
+
+    private RacePlayer nextPlayer()
+    {
+        next = (next + 1) % racePlayers.size();
+        return racePlayers.get(next);
+    }
+}
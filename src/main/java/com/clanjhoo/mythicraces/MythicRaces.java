@@ -1,20 +1,348 @@
 package com.clanjhoo.mythicraces;
 
+import com.clanjhoo.mythicraces.commands.RacesCommand;
+import com.clanjhoo.mythicraces.data.AggregatingPlayerRepository;
+import com.clanjhoo.mythicraces.data.PlayerRepositories;
+import com.clanjhoo.mythicraces.data.PlayerRepository;
+import com.clanjhoo.mythicraces.data.RaceAggregates;
+import com.clanjhoo.mythicraces.data.RepositoryBackup;
+import com.clanjhoo.mythicraces.effects.RaceEffect;
+import com.clanjhoo.mythicraces.effects.RaceEffectScheduler;
+import com.clanjhoo.mythicraces.effects.RaceEffects;
+import com.clanjhoo.mythicraces.listeners.PlayerListener;
+import com.clanjhoo.mythicraces.players.PlayerRegistry;
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import com.github.rfsmassacre.heavenlibrary.concurrent.StorageExecutor;
+import com.github.rfsmassacre.heavenlibrary.files.GsonJournal;
+import com.github.rfsmassacre.heavenlibrary.files.TextManager;
+import com.github.rfsmassacre.heavenlibrary.files.configs.Configuration;
+import com.github.rfsmassacre.heavenlibrary.files.configs.LanguageManager;
+import com.github.rfsmassacre.heavenlibrary.files.configs.Locale;
+import com.github.rfsmassacre.heavenlibrary.metrics.MainThreadGuard;
+import com.github.rfsmassacre.heavenlibrary.metrics.StorageMetrics;
+import com.github.rfsmassacre.heavenlibrary.startup.Phase;
+import com.github.rfsmassacre.heavenlibrary.startup.StartupOrchestrator;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
 public final class MythicRaces extends JavaPlugin
 {
+    private static MythicRaces instance;
+
+    private Configuration configuration;
+    private Locale locale;
+    private LanguageManager languages;
+    private TextManager textManager;
+    private CompletableFuture<PlayerRepository> repository;
+    private GsonJournal<RacePlayer> journal;
+    private volatile RaceAggregates aggregates;
+    private PlayerRegistry registry;
+    private RepositoryBackup backup;
+    private RaceEffectScheduler effectScheduler;
+
+    public static MythicRaces getInstance()
+    {
+        return instance;
+    }
 
     @Override
     public void onEnable()
     {
-        // Plugin startup logic
+        instance = this;
+        getDataFolder().mkdirs();
+
+        //Files and the database connection load in parallel. Only what the first tick needs is waited on.
+        StartupOrchestrator startup = new StartupOrchestrator(getLogger(), 4);
+        Phase<Configuration> configurationPhase = startup.phase("configuration", () ->
+                new Configuration(this, "", "config.yml"));
+        Phase<Locale> localePhase = startup.phase("locale", () -> new Locale(this, "", "locale.yml"));
+        Phase<TextManager> textPhase = startup.phase("texts", () ->
+        {
+            TextManager texts = new TextManager(this, "texts");
+            texts.preload();
+            return texts;
+        });
+        Phase<GsonJournal<RacePlayer>> journalPhase = startup.phase("journal", () ->
+                configurationPhase.get().getBoolean("journal.enabled") ? new GsonJournal<>(this, "journal",
+                        RacePlayer.class) : null, configurationPhase);
+        Phase<PlayerRepository> repositoryPhase = startup.phase("storage", () ->
+        {
+            Configuration configuration = configurationPhase.get();
+            PlayerRepository storage = PlayerRepositories.create(this, configuration);
+
+            //Race statistics come from the last checkpoint, or from counting every stored player after a crash.
+            //Other servers sharing the storage may have changed anything since, so nothing is checkpointed then.
+            RaceAggregates raceAggregates = new RaceAggregates(configuration.getInt("stats.top-size"));
+            File checkpoint = storage.isShared() ? null : new File(getDataFolder(), "aggregates.dat");
+            if (checkpoint == null || !raceAggregates.load(checkpoint, storage.getType()))
+            {
+                int counted = raceAggregates.rebuild(storage, configuration.getInt("storage.batch-size"));
+                getLogger().info("Counted " + counted + " stored players for race statistics.");
+            }
+
+            this.aggregates = raceAggregates;
+            PlayerRepository repository = new AggregatingPlayerRepository(storage, raceAggregates, checkpoint);
+            GsonJournal<RacePlayer> journal = journalPhase.get();
+            if (journal != null)
+            {
+                //Changes left over from a crash are saved before anyone can load stale data.
+                //Recovered players replace what is stored, since the journal holds the newest changes. Storage
+                //shared with other servers may hold newer changes made since the crash, so there recovered players
+                //are saved at the version they were journaled at and refused if another server stored them since.
+                int[] failed = new int[1];
+                int recovered = journal.replay((racePlayers) -> failed[0] = racePlayers.size() -
+                        (storage.isShared() ? repository.storeAll(racePlayers).size() :
+                                repository.storeUnversioned(racePlayers)));
+                if (recovered > 0)
+                {
+                    getLogger().info("Recovered " + recovered + " players from the journal.");
+                }
+
+                if (failed[0] > 0)
+                {
+                    getLogger().warning("Did not store " + failed[0] + " players recovered from the journal. They " +
+                            "could not be written or another server stored them since.");
+                }
+            }
+
+            return repository;
+        }, configurationPhase, journalPhase);
+        startup.finish().whenComplete((ignored, throwable) ->
+        {
+            if (throwable != null)
+            {
+                getLogger().log(Level.SEVERE, "Failed to start up, disabling.", throwable);
+                Bukkit.getScheduler().runTask(this, () -> getServer().getPluginManager().disablePlugin(this));
+            }
+        });
+
+        try
+        {
+            startup.await(configurationPhase, localePhase, textPhase, journalPhase);
+        }
+        catch (Exception exception)
+        {
+            getLogger().log(Level.SEVERE, "Failed to load files, disabling.", exception);
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+
+        this.configuration = configurationPhase.get();
+        if (configuration.getBoolean("main-thread-guard.enabled"))
+        {
+            MainThreadGuard.enable(getLogger(), configuration.getLong("main-thread-guard.threshold-millis"),
+                    configuration.getLong("main-thread-guard.cooldown-seconds"));
+        }
+
+        this.locale = localePhase.get();
+        locale.setTimeCache(configuration.getInt("time-cache-seconds"));
+        this.languages = new LanguageManager(this, "lang", locale);
+        this.textManager = textPhase.get();
+        this.repository = repositoryPhase.getFuture();
+        this.journal = journalPhase.get();
+        this.registry = new PlayerRegistry(this, repository, configuration.getString("default-race"),
+                configuration.getLong("prefetch.timeout-millis"), configuration.getLong("prefetch.ttl-millis"),
+                journal, configuration.getLong("storage.mysql.sync.lease-seconds") * 1000L,
+                PlayerRepositories.executor(configuration));
+        repository.thenAccept((loaded) ->
+        {
+            loaded.watch(registry::refresh);
+            loaded.onConflict(registry::refresh);
+        });
+        this.effectScheduler = new RaceEffectScheduler(registry, configuration.getLong("effects.budget-nanos"));
+        for (RaceEffect effect : RaceEffects.fromConfiguration(configuration))
+        {
+            effectScheduler.addEffect(effect);
+        }
+
+        effectScheduler.runTaskTimer(this, 1L, 1L);
 
+        long autosaveInterval = configuration.getLong("autosave-interval") * 20L;
+        if (autosaveInterval > 0)
+        {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(this, () ->
+            {
+                if (repository.isDone())
+                {
+                    registry.checkpoint();
+                }
+            }, autosaveInterval, autosaveInterval);
+        }
+
+        //Leases are renewed three times per lease, so a single late renewal never lets one run out.
+        long heartbeatInterval = configuration.getLong("storage.mysql.sync.lease-seconds") * 20L / 3L;
+        if (heartbeatInterval > 0)
+        {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(this, registry::heartbeat, heartbeatInterval,
+                    heartbeatInterval);
+        }
+
+        long backupInterval = configuration.getLong("backup.interval-minutes") * 60L * 20L;
+        if (backupInterval > 0)
+        {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(this, () ->
+            {
+                RepositoryBackup backup = getBackup();
+                if (backup.isSupported())
+                {
+                    try
+                    {
+                        backup.run();
+                    }
+                    catch (IOException exception)
+                    {
+                        getLogger().log(Level.WARNING, "Failed to back up players.", exception);
+                    }
+                }
+            }, backupInterval, backupInterval);
+        }
+
+        long metricsInterval = configuration.getLong("metrics.log-interval") * 20L;
+        if (metricsInterval > 0)
+        {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(this, () ->
+            {
+                for (String line : StorageMetrics.summary())
+                {
+                    getLogger().info(line);
+                }
+            }, metricsInterval, metricsInterval);
+        }
+
+        getServer().getPluginManager().registerEvents(new PlayerListener(this, registry, effectScheduler,
+                languages), this);
+        RacesCommand racesCommand = new RacesCommand(this);
+        getCommand("races").setExecutor(racesCommand);
+        getCommand("races").setTabCompleter(racesCommand);
+
+        //Players already online after a reload.
+        for (Player player : Bukkit.getOnlinePlayers())
+        {
+            registry.load(player);
+            effectScheduler.addPlayer(player.getUniqueId());
+            languages.addPlayer(player);
+        }
     }
 
     @Override
     public void onDisable()
     {
-        // Plugin shutdown logic
+        MainThreadGuard.disable();
+
+        //Saves of players who just quit finish before everyone left is saved.
+        StorageExecutor.closeAll(10000L);
+        if (registry != null)
+        {
+            registry.checkpoint();
+            registry.release();
+        }
+
+        if (journal != null)
+        {
+            try
+            {
+                journal.close();
+            }
+            catch (IOException exception)
+            {
+                exception.printStackTrace();
+            }
+        }
+
+        if (repository != null && !repository.isCompletedExceptionally())
+        {
+            try
+            {
+                repository.join().close();
+            }
+            catch (Exception exception)
+            {
+                exception.printStackTrace();
+            }
+        }
+    }
+
+    public Configuration getConfiguration()
+    {
+        return configuration;
+    }
+
+    public Locale getLocale()
+    {
+        return locale;
+    }
+
+    public LanguageManager getLanguages()
+    {
+        return languages;
+    }
+
+    public TextManager getTextManager()
+    {
+        return textManager;
+    }
+
+    /**
+     * Retrieve player repository, waiting for it to connect if it is still starting up.
+     *
+     * @return Player repository.
+     */
+    public PlayerRepository getRepository()
+    {
+        return repository.join();
+    }
+
+    /**
+     * Check whether the repository finished starting up, so retrieving it or the race statistics does not wait.
+     *
+     * @return True if ready.
+     */
+    public boolean isStorageReady()
+    {
+        return repository.isDone() && !repository.isCompletedExceptionally();
+    }
+
+    /**
+     * Retrieve backup of the player repository, waiting for it to connect if it is still starting up.
+     *
+     * @return Repository backup.
+     */
+    public synchronized RepositoryBackup getBackup()
+    {
+        if (backup == null)
+        {
+            this.backup = new RepositoryBackup(getRepository(), new File(getDataFolder(),
+                    configuration.getString("backup.folder")), configuration.getInt("backup.keep"),
+                    configuration.getLong("backup.rate-limit-kb") * 1024L);
+        }
+
+        return backup;
+    }
+
+    /**
+     * Retrieve race statistics, waiting for the repository if it is still starting up.
+     *
+     * @return Race aggregates.
+     */
+    public RaceAggregates getAggregates()
+    {
+        getRepository();
+        return aggregates;
+    }
+
+    public PlayerRegistry getRegistry()
+    {
+        return registry;
+    }
+
+    public RaceEffectScheduler getEffectScheduler()
+    {
+        return effectScheduler;
     }
 }
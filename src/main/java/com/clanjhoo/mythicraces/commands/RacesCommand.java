@@ -0,0 +1,431 @@
+package com.clanjhoo.mythicraces.commands;
+
+import com.clanjhoo.mythicraces.MythicRaces;
+import com.clanjhoo.mythicraces.data.PlayerRepositories;
+import com.clanjhoo.mythicraces.data.PlayerRepository;
+import com.clanjhoo.mythicraces.data.RaceAggregates;
+import com.clanjhoo.mythicraces.data.RepositoryBackup;
+import com.clanjhoo.mythicraces.data.RepositoryMigration;
+import com.clanjhoo.mythicraces.data.StorageType;
+import com.clanjhoo.mythicraces.effects.EffectStats;
+import com.clanjhoo.mythicraces.effects.RaceEffectScheduler;
+import com.github.rfsmassacre.heavenlibrary.files.configs.Configuration;
+import com.github.rfsmassacre.heavenlibrary.files.configs.LanguageManager;
+import com.github.rfsmassacre.heavenlibrary.metrics.StorageMetrics;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handles /races and all of its sub commands.
+ */
+public class RacesCommand implements TabExecutor
+{
+    private static final String ADMIN_PERMISSION = "mythicraces.admin";
+    private static final String STATS_PERMISSION = "mythicraces.stats";
+
+    private final MythicRaces plugin;
+
+    public RacesCommand(MythicRaces plugin)
+    {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args)
+    {
+        if (args.length == 0)
+        {
+            help(sender);
+            return true;
+        }
+
+        switch (args[0].toLowerCase())
+        {
+            case "migrate":
+                migrate(sender, args);
+                return true;
+            case "effects":
+                effects(sender, args);
+                return true;
+            case "metrics":
+                metrics(sender, args);
+                return true;
+            case "backup":
+                backup(sender);
+                return true;
+            case "stats":
+                stats(sender, args);
+                return true;
+            default:
+                help(sender);
+                return true;
+        }
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args)
+    {
+        if (args.length == 1)
+        {
+            return filter(Arrays.asList("migrate", "effects", "metrics", "backup", "stats"), args[0]);
+        }
+
+        if (args.length <= 3 && args[0].equalsIgnoreCase("migrate"))
+        {
+            List<String> types = new ArrayList<>();
+            for (StorageType type : StorageType.values())
+            {
+                types.add(type.name().toLowerCase());
+            }
+
+            return filter(types, args[args.length - 1]);
+        }
+
+        //Never wait on storage that is still starting up from the main thread.
+        if (args.length == 2 && args[0].equalsIgnoreCase("stats") && plugin.isStorageReady())
+        {
+            List<String> options = new ArrayList<>(plugin.getAggregates().getCounts().keySet());
+            options.add("rebuild");
+            return filter(options, args[1]);
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * /races migrate <from> <to>
+     *
+     * Copies every stored player between two backends. Run it while the server is empty and switch storage.type
+     * afterwards.
+     */
+    private void migrate(CommandSender sender, String[] args)
+    {
+        LanguageManager languages = plugin.getLanguages();
+        if (!sender.hasPermission(ADMIN_PERMISSION))
+        {
+            languages.sendLocale(sender, true, "no-permission");
+            return;
+        }
+
+        if (args.length < 3)
+        {
+            languages.sendLocale(sender, true, "migrate.usage");
+            return;
+        }
+
+        StorageType from = StorageType.fromName(args[1]);
+        StorageType to = StorageType.fromName(args[2]);
+        if (from == null || to == null || from == to)
+        {
+            languages.sendLocale(sender, true, "migrate.invalid-types", "{types}",
+                    Arrays.toString(StorageType.values()).toLowerCase());
+            return;
+        }
+
+        Configuration configuration = plugin.getConfiguration();
+        int batchSize = configuration.getInt("storage.batch-size");
+        languages.sendLocale(sender, true, "migrate.started", "{from}", from.name().toLowerCase(), "{to}",
+                to.name().toLowerCase());
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () ->
+        {
+            long start = System.currentTimeMillis();
+            PlayerRepository source = null;
+            PlayerRepository target = null;
+            try
+            {
+                source = open(configuration, from);
+                target = open(configuration, to);
+                RepositoryMigration migration = new RepositoryMigration(source, target, batchSize);
+                long migrated = migration.run();
+                languages.sendLocale(sender, true, "migrate.finished", "{amount}", Long.toString(migrated), "{time}",
+                        Long.toString(System.currentTimeMillis() - start));
+                if (migration.getFailed() > 0)
+                {
+                    languages.sendLocale(sender, true, "migrate.incomplete", "{failed}",
+                            Long.toString(migration.getFailed()));
+                }
+            }
+            catch (Exception exception)
+            {
+                exception.printStackTrace();
+                languages.sendLocale(sender, true, "migrate.failed");
+            }
+            finally
+            {
+                release(source);
+                release(target);
+            }
+        });
+    }
+
+    /**
+     * Reuse the active repository instead of opening its files or connection a second time.
+     */
+    private PlayerRepository open(Configuration configuration, StorageType type)
+    {
+        PlayerRepository active = plugin.getRepository();
+        if (active.getType() == type)
+        {
+            return active;
+        }
+
+        return PlayerRepositories.create(plugin, configuration, type);
+    }
+
+    private void release(PlayerRepository repository)
+    {
+        if (repository == null || repository == plugin.getRepository())
+        {
+            return;
+        }
+
+        try
+        {
+            repository.close();
+        }
+        catch (Exception exception)
+        {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * /races effects [reset]
+     *
+     * Shows how much tick time every race effect costs.
+     */
+    private void effects(CommandSender sender, String[] args)
+    {
+        LanguageManager languages = plugin.getLanguages();
+        if (!sender.hasPermission(ADMIN_PERMISSION))
+        {
+            languages.sendLocale(sender, true, "no-permission");
+            return;
+        }
+
+        RaceEffectScheduler scheduler = plugin.getEffectScheduler();
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset"))
+        {
+            scheduler.resetStats();
+            languages.sendLocale(sender, true, "effects.reset");
+            return;
+        }
+
+        languages.sendLocale(sender, true, "effects.summary", "{budget}",
+                Long.toString(scheduler.getBudgetNanos() / 1000), "{backlog}", Integer.toString(scheduler.getBacklog()),
+                "{carried}", Long.toString(scheduler.getCarriedOver()), "{ticks}",
+                Long.toString(scheduler.getTicksOverBudget()));
+        for (EffectStats stats : scheduler.getStats().values())
+        {
+            languages.sendLocale(sender, false, "effects.effect", "{effect}", stats.getName(), "{runs}",
+                    Long.toString(stats.getRuns()), "{average}", Long.toString(stats.getAverageNanos() / 1000),
+                    "{max}", Long.toString(stats.getMaxNanos() / 1000), "{total}",
+                    Long.toString(stats.getTotalNanos() / 1000000));
+        }
+    }
+
+    /**
+     * /races metrics [reset]
+     *
+     * Shows latency, throughput and errors of every storage operation.
+     */
+    private void metrics(CommandSender sender, String[] args)
+    {
+        LanguageManager languages = plugin.getLanguages();
+        if (!sender.hasPermission(ADMIN_PERMISSION))
+        {
+            languages.sendLocale(sender, true, "no-permission");
+            return;
+        }
+
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset"))
+        {
+            StorageMetrics.reset();
+            languages.sendLocale(sender, true, "metrics.reset");
+            return;
+        }
+
+        List<String> lines = StorageMetrics.summary();
+        if (lines.isEmpty())
+        {
+            languages.sendLocale(sender, true, "metrics.empty");
+            return;
+        }
+
+        languages.sendLocale(sender, true, "metrics.header");
+        for (String line : lines)
+        {
+            languages.sendLocale(sender, false, "metrics.line", "{metric}", line);
+        }
+    }
+
+    /**
+     * /races backup
+     *
+     * Backs up stored players right away without waiting for the next scheduled backup.
+     */
+    private void backup(CommandSender sender)
+    {
+        LanguageManager languages = plugin.getLanguages();
+        if (!sender.hasPermission(ADMIN_PERMISSION))
+        {
+            languages.sendLocale(sender, true, "no-permission");
+            return;
+        }
+
+        languages.sendLocale(sender, true, "backup.started");
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () ->
+        {
+            RepositoryBackup backup = plugin.getBackup();
+            if (!backup.isSupported())
+            {
+                languages.sendLocale(sender, true, "backup.unsupported");
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            try
+            {
+                File archive = backup.run();
+                if (archive == null)
+                {
+                    languages.sendLocale(sender, true, "backup.running");
+                    return;
+                }
+
+                languages.sendLocale(sender, true, "backup.finished", "{file}", archive.getName(), "{time}",
+                        Long.toString(System.currentTimeMillis() - start));
+            }
+            catch (IOException exception)
+            {
+                exception.printStackTrace();
+                languages.sendLocale(sender, true, "backup.failed");
+            }
+        });
+    }
+
+    /**
+     * /races stats [race|rebuild]
+     *
+     * Shows how many stored players every race has, or the highest level players of a race. Both are kept up to date
+     * as players are saved, so nothing is read from storage.
+     */
+    private void stats(CommandSender sender, String[] args)
+    {
+        LanguageManager languages = plugin.getLanguages();
+        if (!sender.hasPermission(STATS_PERMISSION))
+        {
+            languages.sendLocale(sender, true, "no-permission");
+            return;
+        }
+
+        //Statistics are counted while storage starts up, which the main thread must not wait on.
+        if (!plugin.isStorageReady())
+        {
+            languages.sendLocale(sender, true, "stats.loading");
+            return;
+        }
+
+        RaceAggregates aggregates = plugin.getAggregates();
+        if (args.length > 1 && args[1].equalsIgnoreCase("rebuild"))
+        {
+            rebuildStats(sender, aggregates);
+            return;
+        }
+
+        if (args.length > 1)
+        {
+            String race = args[1];
+            if (aggregates.getCount(race) == 0)
+            {
+                languages.sendLocale(sender, true, "stats.unknown-race", "{race}", race);
+                return;
+            }
+
+            languages.sendLocale(sender, true, "stats.top-header", "{race}", race, "{count}",
+                    Integer.toString(aggregates.getCount(race)));
+            int rank = 1;
+            for (RaceAggregates.Entry entry : aggregates.getTop(race))
+            {
+                languages.sendLocale(sender, false, "stats.top", "{rank}", Integer.toString(rank++), "{name}",
+                        entry.getUsername() != null ? entry.getUsername() : entry.getPlayerId().toString(), "{level}",
+                        Integer.toString(entry.getLevel()));
+            }
+
+            return;
+        }
+
+        languages.sendLocale(sender, true, "stats.header", "{total}", Integer.toString(aggregates.getTotal()));
+        for (Map.Entry<String, Integer> count : aggregates.getCounts().entrySet())
+        {
+            languages.sendLocale(sender, false, "stats.race", "{race}", count.getKey(), "{count}",
+                    Integer.toString(count.getValue()));
+        }
+    }
+
+    /**
+     * Recount every stored player, such as after editing player files by hand.
+     */
+    private void rebuildStats(CommandSender sender, RaceAggregates aggregates)
+    {
+        LanguageManager languages = plugin.getLanguages();
+        if (!sender.hasPermission(ADMIN_PERMISSION))
+        {
+            languages.sendLocale(sender, true, "no-permission");
+            return;
+        }
+
+        int batchSize = plugin.getConfiguration().getInt("storage.batch-size");
+        languages.sendLocale(sender, true, "stats.rebuilding");
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () ->
+        {
+            long start = System.currentTimeMillis();
+            int counted = aggregates.rebuild(plugin.getRepository(), batchSize);
+            if (counted < 0)
+            {
+                languages.sendLocale(sender, true, "stats.running");
+                return;
+            }
+
+            languages.sendLocale(sender, true, "stats.rebuilt", "{amount}", Integer.toString(counted), "{time}",
+                    Long.toString(System.currentTimeMillis() - start));
+        });
+    }
+
+    /**
+     * /races
+     *
+     * Shows every sub command.
+     */
+    private void help(CommandSender sender)
+    {
+        for (String line : plugin.getTextManager().getTextFile("help.txt"))
+        {
+            plugin.getLocale().sendMessage(sender, line);
+        }
+    }
+
+    private static List<String> filter(List<String> options, String prefix)
+    {
+        List<String> matches = new ArrayList<>();
+        for (String option : options)
+        {
+            if (option.startsWith(prefix.toLowerCase()))
+            {
+                matches.add(option);
+            }
+        }
+
+        return matches;
+    }
+}
@@ -0,0 +1,228 @@
+package com.clanjhoo.mythicraces.data;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Wraps a repository so every player stored or removed through it is also counted in the race aggregates. Closing it
+ * writes the aggregates to their checkpoint before closing the repository underneath.
+ *
+ * When the repository is shared, players other servers changed are counted again as soon as the change is seen, and
+ * so are players whose save was refused.
+ */
+public class AggregatingPlayerRepository implements PlayerRepository
+{
+    private final PlayerRepository repository;
+    private final RaceAggregates aggregates;
+    private final File checkpoint;
+
+    /**
+     * Constructor.
+     *
+     * @param repository Repository to wrap.
+     * @param aggregates Aggregates already counted from the repository.
+     * @param checkpoint File the aggregates are written to when closing, or null to never write them.
+     */
+    public AggregatingPlayerRepository(PlayerRepository repository, RaceAggregates aggregates, File checkpoint)
+    {
+        this.repository = repository;
+        this.aggregates = aggregates;
+        this.checkpoint = checkpoint;
+    }
+
+    public RaceAggregates getAggregates()
+    {
+        return aggregates;
+    }
+
+    @Override
+    public RacePlayer load(UUID playerId)
+    {
+        return repository.load(playerId);
+    }
+
+    @Override
+    public boolean store(RacePlayer racePlayer)
+    {
+        boolean stored = repository.store(racePlayer);
+        if (stored)
+        {
+            aggregates.update(racePlayer);
+        }
+
+        return stored;
+    }
+
+    @Override
+    public boolean storeAndRelease(RacePlayer racePlayer)
+    {
+        boolean stored = repository.storeAndRelease(racePlayer);
+        if (stored)
+        {
+            aggregates.update(racePlayer);
+        }
+
+        return stored;
+    }
+
+    @Override
+    public List<RacePlayer> storeAll(Collection<RacePlayer> racePlayers)
+    {
+        List<RacePlayer> stored = repository.storeAll(racePlayers);
+        for (RacePlayer racePlayer : stored)
+        {
+            aggregates.update(racePlayer);
+        }
+
+        return stored;
+    }
+
+    @Override
+    public int storeUnversioned(Collection<RacePlayer> racePlayers)
+    {
+        int stored = repository.storeUnversioned(racePlayers);
+        if (stored < racePlayers.size())
+        {
+            //Unknown which ones were written, so count what is stored.
+            Set<UUID> playerIds = new HashSet<>();
+            for (RacePlayer racePlayer : racePlayers)
+            {
+                playerIds.add(racePlayer.getPlayerId());
+            }
+
+            recount(playerIds);
+            return stored;
+        }
+
+        for (RacePlayer racePlayer : racePlayers)
+        {
+            aggregates.update(racePlayer);
+        }
+
+        return stored;
+    }
+
+    @Override
+    public void remove(UUID playerId)
+    {
+        repository.remove(playerId);
+        aggregates.remove(playerId);
+    }
+
+    @Override
+    public List<RacePlayer> loadAll(Collection<UUID> playerIds)
+    {
+        return repository.loadAll(playerIds);
+    }
+
+    @Override
+    public List<RacePlayer> findByRace(String race)
+    {
+        return repository.findByRace(race);
+    }
+
+    @Override
+    public void forEach(int batchSize, Consumer<List<RacePlayer>> task)
+    {
+        repository.forEach(batchSize, task);
+    }
+
+    @Override
+    public void snapshot(File target) throws IOException
+    {
+        repository.snapshot(target);
+    }
+
+    @Override
+    public boolean isShared()
+    {
+        return repository.isShared();
+    }
+
+    @Override
+    public void watch(Consumer<Set<UUID>> listener)
+    {
+        repository.watch((playerIds) ->
+        {
+            recount(playerIds);
+            listener.accept(playerIds);
+        });
+    }
+
+    @Override
+    public boolean acquire(UUID playerId, long leaseMillis)
+    {
+        return repository.acquire(playerId, leaseMillis);
+    }
+
+    @Override
+    public void renew(Collection<UUID> playerIds, long leaseMillis)
+    {
+        repository.renew(playerIds, leaseMillis);
+    }
+
+    @Override
+    public void release(Collection<UUID> playerIds)
+    {
+        repository.release(playerIds);
+    }
+
+    @Override
+    public void onConflict(Consumer<Set<UUID>> handler)
+    {
+        //A refused save means another server stored the player since, so count what it stored.
+        repository.onConflict((playerIds) ->
+        {
+            recount(playerIds);
+            handler.accept(playerIds);
+        });
+    }
+
+    @Override
+    public StorageType getType()
+    {
+        return repository.getType();
+    }
+
+    /**
+     * Count players again from what is stored, dropping those no longer stored.
+     */
+    private void recount(Set<UUID> playerIds)
+    {
+        Set<UUID> removed = new HashSet<>(playerIds);
+        for (RacePlayer racePlayer : repository.loadAll(playerIds))
+        {
+            removed.remove(racePlayer.getPlayerId());
+            aggregates.update(racePlayer);
+        }
+
+        for (UUID playerId : removed)
+        {
+            aggregates.remove(playerId);
+        }
+    }
+
+    @Override
+    public void close() throws Exception
+    {
+        try
+        {
+            if (checkpoint != null)
+            {
+                aggregates.checkpoint(checkpoint, getType());
+            }
+        }
+        finally
+        {
+            repository.close();
+        }
+    }
+}
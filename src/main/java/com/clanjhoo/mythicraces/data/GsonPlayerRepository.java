@@ -0,0 +1,110 @@
+package com.clanjhoo.mythicraces.data;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import com.github.rfsmassacre.heavenlibrary.files.GsonManager;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Stores every player's race data as a JSON file named after their UUID.
+ */
+public class GsonPlayerRepository extends GsonManager<RacePlayer> implements PlayerRepository
+{
+    public GsonPlayerRepository(JavaPlugin plugin)
+    {
+        super(plugin, "players", RacePlayer.class);
+
+        //Players are looked up by race through an index file instead of reading every player.
+        addIndex("race", RacePlayer::getRace);
+        getIndex().load();
+    }
+
+    @Override
+    public RacePlayer load(UUID playerId)
+    {
+        try
+        {
+            return readStrict(playerId.toString());
+        }
+        catch (IOException exception)
+        {
+            throw new StorageException("Could not load player " + playerId + ".", exception);
+        }
+    }
+
+    @Override
+    public boolean store(RacePlayer racePlayer)
+    {
+        try
+        {
+            writeStrict(racePlayer.getPlayerId().toString(), racePlayer);
+            return true;
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public void remove(UUID playerId)
+    {
+        delete(playerId.toString());
+    }
+
+    @Override
+    public List<RacePlayer> findByRace(String race)
+    {
+        return find("race", race);
+    }
+
+    @Override
+    public void forEach(int batchSize, Consumer<List<RacePlayer>> task)
+    {
+        File[] files = getFiles();
+        if (files == null)
+        {
+            return;
+        }
+
+        List<RacePlayer> batch = new ArrayList<>(batchSize);
+        for (File file : files)
+        {
+            RacePlayer racePlayer = read(file.getName());
+            if (racePlayer != null)
+            {
+                batch.add(racePlayer);
+            }
+
+            if (batch.size() >= batchSize)
+            {
+                task.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+
+        if (!batch.isEmpty())
+        {
+            task.accept(batch);
+        }
+    }
+
+    @Override
+    public StorageType getType()
+    {
+        return StorageType.JSON;
+    }
+
+    @Override
+    public void close()
+    {
+        //Do nothing. Every write is already on disk.
+    }
+}
@@ -0,0 +1,43 @@
+package com.clanjhoo.mythicraces.data;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import com.github.rfsmassacre.heavenlibrary.databases.H2Database;
+import com.github.rfsmassacre.heavenlibrary.databases.VersionedRecords;
+
+/**
+ * Stores every player's race data in an embedded H2 database.
+ */
+public class H2PlayerRepository extends H2Database<RacePlayer> implements SQLPlayerRepository
+{
+    private final VersionedRecords records;
+
+    public H2PlayerRepository(String absolutePath, String database)
+    {
+        super(absolutePath, database, "player_id", COLUMNS);
+
+        createTable();
+        this.records = new VersionedRecords(this, TABLE, "player_id", "username", "race", "race_level");
+    }
+
+    public H2PlayerRepository(String absolutePath, String database, int cacheSize, int lockTimeout,
+                              boolean inMemory, long snapshotSeconds, int serverPort)
+    {
+        super(absolutePath, database, cacheSize, lockTimeout, inMemory, snapshotSeconds, serverPort, "player_id",
+                COLUMNS);
+
+        createTable();
+        this.records = new VersionedRecords(this, TABLE, "player_id", "username", "race", "race_level");
+    }
+
+    @Override
+    public VersionedRecords getRecords()
+    {
+        return records;
+    }
+
+    @Override
+    public StorageType getType()
+    {
+        return StorageType.H2;
+    }
+}
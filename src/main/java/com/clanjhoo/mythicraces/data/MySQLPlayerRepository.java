@@ -0,0 +1,184 @@
+package com.clanjhoo.mythicraces.data;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import com.github.rfsmassacre.heavenlibrary.databases.ChangeFeed;
+import com.github.rfsmassacre.heavenlibrary.databases.MySQLDatabase;
+import com.github.rfsmassacre.heavenlibrary.databases.VersionedRecords;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Stores every player's race data in a MySQL database.
+ *
+ * Several servers can share the database. Each of them logs the players it stores or removes to a change table, and
+ * polls it for players changed by the others.
+ */
+public class MySQLPlayerRepository extends MySQLDatabase<RacePlayer> implements SQLPlayerRepository
+{
+    private static final String CHANGES_TABLE = TABLE + "_changes";
+    private static final int CHANGES_BATCH = 1000;
+
+    private final VersionedRecords records;
+    private final ChangeFeed changes;
+    private final long pollMillis;
+    private final long retentionMillis;
+
+    public MySQLPlayerRepository(String hostName, String database, String username, String password, int port,
+                                 boolean ssl)
+    {
+        this(hostName, database, username, password, port, ssl, null, 0, 0L, 0L);
+    }
+
+    public MySQLPlayerRepository(String hostName, String database, String username, String password, int port,
+                                 boolean ssl, File spoolFile, int healthCheckSeconds)
+    {
+        this(hostName, database, username, password, port, ssl, spoolFile, healthCheckSeconds, 0L, 0L);
+    }
+
+    /**
+     * Constructor for a database shared between servers.
+     *
+     * @param pollMillis Milliseconds between checks for players changed by other servers, or 0 if not shared.
+     * @param retentionMillis Milliseconds changes are kept for other servers to read.
+     */
+    public MySQLPlayerRepository(String hostName, String database, String username, String password, int port,
+                                 boolean ssl, File spoolFile, int healthCheckSeconds, long pollMillis,
+                                 long retentionMillis)
+    {
+        super(hostName, database, username, password, port, ssl, spoolFile, healthCheckSeconds, "player_id",
+                COLUMNS);
+        this.pollMillis = pollMillis;
+        this.retentionMillis = retentionMillis;
+
+        createTable();
+        this.records = new VersionedRecords(this, TABLE, "player_id", "username", "race", "race_level");
+        this.changes = pollMillis > 0 ? new ChangeFeed(this, CHANGES_TABLE) : null;
+    }
+
+    @Override
+    public boolean store(RacePlayer racePlayer)
+    {
+        boolean stored = SQLPlayerRepository.super.store(racePlayer);
+        if (stored && changes != null)
+        {
+            changes.record(racePlayer.getPlayerId().toString());
+        }
+
+        return stored;
+    }
+
+    @Override
+    public boolean storeAndRelease(RacePlayer racePlayer)
+    {
+        boolean stored = SQLPlayerRepository.super.storeAndRelease(racePlayer);
+        if (stored && changes != null)
+        {
+            changes.record(racePlayer.getPlayerId().toString());
+        }
+
+        return stored;
+    }
+
+    @Override
+    public List<RacePlayer> storeAll(Collection<RacePlayer> racePlayers)
+    {
+        List<RacePlayer> stored = SQLPlayerRepository.super.storeAll(racePlayers);
+        if (changes != null && !stored.isEmpty())
+        {
+            List<String> keys = new ArrayList<>(stored.size());
+            for (RacePlayer racePlayer : stored)
+            {
+                keys.add(racePlayer.getPlayerId().toString());
+            }
+
+            changes.record(keys);
+        }
+
+        return stored;
+    }
+
+    @Override
+    public int storeUnversioned(Collection<RacePlayer> racePlayers)
+    {
+        int stored = SQLPlayerRepository.super.storeUnversioned(racePlayers);
+        if (changes != null)
+        {
+            List<String> keys = new ArrayList<>(racePlayers.size());
+            for (RacePlayer racePlayer : racePlayers)
+            {
+                keys.add(racePlayer.getPlayerId().toString());
+            }
+
+            changes.record(keys);
+        }
+
+        return stored;
+    }
+
+    @Override
+    public void remove(UUID playerId)
+    {
+        SQLPlayerRepository.super.remove(playerId);
+        if (changes != null)
+        {
+            changes.record(playerId.toString());
+        }
+    }
+
+    @Override
+    public VersionedRecords getRecords()
+    {
+        return records;
+    }
+
+    @Override
+    public boolean isShared()
+    {
+        return changes != null;
+    }
+
+    @Override
+    public void watch(Consumer<Set<UUID>> listener)
+    {
+        if (changes == null)
+        {
+            return;
+        }
+
+        changes.start(pollMillis, CHANGES_BATCH, retentionMillis, (keys) ->
+        {
+            Set<UUID> playerIds = new LinkedHashSet<>(keys.size());
+            for (String key : keys)
+            {
+                playerIds.add(UUID.fromString(key));
+            }
+
+            listener.accept(playerIds);
+        });
+    }
+
+    @Override
+    public void close() throws SQLException
+    {
+        if (changes != null)
+        {
+            changes.close();
+        }
+
+        super.close();
+    }
+
+    @Override
+    public StorageType getType()
+    {
+        return StorageType.MYSQL;
+    }
+}
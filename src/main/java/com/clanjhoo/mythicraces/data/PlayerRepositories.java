@@ -0,0 +1,103 @@
+package com.clanjhoo.mythicraces.data;
+
+import com.github.rfsmassacre.heavenlibrary.concurrent.StorageExecutor;
+import com.github.rfsmassacre.heavenlibrary.files.configs.Configuration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+
+/**
+ * Builds the player repository chosen in the configuration.
+ */
+public final class PlayerRepositories
+{
+    private PlayerRepositories()
+    {
+        //Do nothing. Utility class.
+    }
+
+    /**
+     * Create the repository configured under "storage.type".
+     *
+     * @param plugin JavaPlugin handling the repository.
+     * @param configuration Configuration holding the storage settings.
+     * @return Player repository.
+     */
+    public static PlayerRepository create(JavaPlugin plugin, Configuration configuration)
+    {
+        StorageType type = StorageType.fromName(configuration.getString("storage.type"));
+        if (type == null)
+        {
+            plugin.getLogger().warning("Unknown storage type " + configuration.getString("storage.type") +
+                    ", falling back to JSON.");
+            type = StorageType.JSON;
+        }
+
+        return create(plugin, configuration, type);
+    }
+
+    /**
+     * Retrieve the executor for blocking work on the storage configured under "storage.type", limited as configured
+     * under "storage.executor". Unknown types share the executor of JSON, like their repository.
+     *
+     * @param configuration Configuration holding the storage settings.
+     * @return Storage executor.
+     */
+    public static StorageExecutor executor(Configuration configuration)
+    {
+        StorageType type = StorageType.fromName(configuration.getString("storage.type"));
+        String backend = (type == null ? StorageType.JSON : type).name();
+        StorageExecutor.configure(backend, configuration.getInt("storage.executor.max-concurrent"),
+                configuration.getInt("storage.executor.platform-threads"));
+        return StorageExecutor.of(backend);
+    }
+
+    /**
+     * Create a repository of the given type using the settings in the configuration.
+     *
+     * @param plugin JavaPlugin handling the repository.
+     * @param configuration Configuration holding the storage settings.
+     * @param type Storage type.
+     * @return Player repository.
+     */
+    public static PlayerRepository create(JavaPlugin plugin, Configuration configuration, StorageType type)
+    {
+        String dataFolder = plugin.getDataFolder().getAbsolutePath();
+        switch (type)
+        {
+            case YAML:
+                return new YamlPlayerRepository(plugin);
+            case SQLITE:
+                if (configuration.getBoolean("storage.sqlite.wal"))
+                {
+                    return new SQLitePlayerRepository(dataFolder, configuration.getString("storage.sqlite.file"),
+                            configuration.getInt("storage.sqlite.readers"),
+                            configuration.getString("storage.sqlite.synchronous"),
+                            configuration.getInt("storage.sqlite.cache-size-kb"),
+                            configuration.getLong("storage.sqlite.mmap-size-mb") * 1024L * 1024L);
+                }
+
+                return new SQLitePlayerRepository(dataFolder, configuration.getString("storage.sqlite.file"));
+            case H2:
+                return new H2PlayerRepository(dataFolder, configuration.getString("storage.h2.file"),
+                        configuration.getInt("storage.h2.cache-size-kb"),
+                        configuration.getInt("storage.h2.lock-timeout-millis"),
+                        configuration.getBoolean("storage.h2.in-memory"),
+                        configuration.getLong("storage.h2.snapshot-seconds"),
+                        configuration.getInt("storage.h2.server-port"));
+            case MYSQL:
+                return new MySQLPlayerRepository(configuration.getString("storage.mysql.host"),
+                        configuration.getString("storage.mysql.database"),
+                        configuration.getString("storage.mysql.username"),
+                        configuration.getString("storage.mysql.password"),
+                        configuration.getInt("storage.mysql.port"),
+                        configuration.getBoolean("storage.mysql.ssl"),
+                        new File(dataFolder, configuration.getString("storage.mysql.spool-file")),
+                        configuration.getInt("storage.mysql.health-check-seconds"),
+                        configuration.getLong("storage.mysql.sync.poll-millis"),
+                        configuration.getLong("storage.mysql.sync.retention-minutes") * 60000L);
+            default:
+                return new GsonPlayerRepository(plugin);
+        }
+    }
+}
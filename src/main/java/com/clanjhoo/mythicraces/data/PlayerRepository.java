@@ -0,0 +1,220 @@
+package com.clanjhoo.mythicraces.data;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Common access to stored player data regardless of the backend it is kept in.
+ */
+public interface PlayerRepository extends AutoCloseable
+{
+    /**
+     * Load stored race state of player.
+     *
+     * @param playerId UUID of player.
+     * @return Stored race state or null if the player has none.
+     * @throws StorageException If what is stored could not be read.
+     */
+    RacePlayer load(UUID playerId);
+
+    /**
+     * Load stored race state of many players at once. Backends able to read them together should override this.
+     *
+     * @param playerIds UUIDs of players.
+     * @return Stored race state of every player that has any.
+     * @throws StorageException If what is stored could not be read.
+     */
+    default List<RacePlayer> loadAll(Collection<UUID> playerIds)
+    {
+        List<RacePlayer> racePlayers = new ArrayList<>(playerIds.size());
+        for (UUID playerId : playerIds)
+        {
+            RacePlayer racePlayer = load(playerId);
+            if (racePlayer != null)
+            {
+                racePlayers.add(racePlayer);
+            }
+        }
+
+        return racePlayers;
+    }
+
+    /**
+     * Store race state of player, replacing what was there.
+     *
+     * @param racePlayer Race state to store.
+     * @return True if stored. False if the write failed or was refused.
+     */
+    boolean store(RacePlayer racePlayer);
+
+    /**
+     * Store many players at once. Backends able to group writes should override this.
+     *
+     * @param racePlayers Race states to store.
+     * @return Players stored. Those whose write failed or was refused are left out.
+     */
+    default List<RacePlayer> storeAll(Collection<RacePlayer> racePlayers)
+    {
+        List<RacePlayer> stored = new ArrayList<>(racePlayers.size());
+        for (RacePlayer racePlayer : racePlayers)
+        {
+            if (store(racePlayer))
+            {
+                stored.add(racePlayer);
+            }
+        }
+
+        return stored;
+    }
+
+    /**
+     * Store many players copied in from elsewhere, such as a migration or crash recovery, replacing what was there
+     * even if another server stored it since. Backends that refuse stale saves must override this.
+     *
+     * @param racePlayers Race states to store.
+     * @return Amount of players stored.
+     */
+    default int storeUnversioned(Collection<RacePlayer> racePlayers)
+    {
+        return storeAll(racePlayers).size();
+    }
+
+    /**
+     * Store race state of a player leaving this server, giving up any lease on it in the same write.
+     *
+     * @param racePlayer Race state to store.
+     * @return True if stored. False if the write failed or was refused.
+     */
+    default boolean storeAndRelease(RacePlayer racePlayer)
+    {
+        return store(racePlayer);
+    }
+
+    /**
+     * Remove stored race state of player.
+     *
+     * @param playerId UUID of player.
+     */
+    void remove(UUID playerId);
+
+    /**
+     * Load every stored player of a race. Backends able to look players up by race should override this instead of
+     * reading every player.
+     *
+     * @param race Name of race.
+     * @return Stored players of the race.
+     */
+    default List<RacePlayer> findByRace(String race)
+    {
+        List<RacePlayer> found = new ArrayList<>();
+        forEach(500, (batch) ->
+        {
+            for (RacePlayer racePlayer : batch)
+            {
+                if (race.equals(racePlayer.getRace()))
+                {
+                    found.add(racePlayer);
+                }
+            }
+        });
+
+        return found;
+    }
+
+    /**
+     * Stream every stored player in batches without holding all of them in memory.
+     *
+     * @param batchSize Maximum amount of players in each batch.
+     * @param task Task that accepts each batch.
+     */
+    void forEach(int batchSize, Consumer<List<RacePlayer>> task);
+
+    /**
+     * Write a consistent copy of every stored player into a folder without stopping other reads and writes.
+     *
+     * @param target Folder to snapshot into. Created if needed.
+     * @throws IOException Expected to throw if the copy could not be made.
+     * @throws UnsupportedOperationException If the data is kept on a database server.
+     */
+    void snapshot(File target) throws IOException;
+
+    /**
+     * Check whether other servers write to the same storage, so anything kept in memory can go stale.
+     *
+     * @return True if shared with other servers.
+     */
+    default boolean isShared()
+    {
+        return false;
+    }
+
+    /**
+     * Watch for players stored or removed by other servers sharing this storage. Does nothing unless shared.
+     *
+     * @param listener Called from a background thread with the players changed elsewhere since the last call.
+     */
+    default void watch(Consumer<Set<UUID>> listener)
+    {
+        //Do nothing. Nobody else writes here.
+    }
+
+    /**
+     * Take a lease on a player, so saves from this server win over saves from others until it runs out. Does nothing
+     * unless the backend keeps leases.
+     *
+     * @param playerId UUID of player.
+     * @param leaseMillis Milliseconds the lease lasts unless renewed.
+     * @return True if this server owns the player now. False if another server does or the player was never stored.
+     */
+    default boolean acquire(UUID playerId, long leaseMillis)
+    {
+        return true;
+    }
+
+    /**
+     * Extend the leases this server holds on players.
+     *
+     * @param playerIds UUIDs of players.
+     * @param leaseMillis Milliseconds the leases last from now.
+     */
+    default void renew(Collection<UUID> playerIds, long leaseMillis)
+    {
+        //Do nothing. No leases are kept.
+    }
+
+    /**
+     * Give up the leases this server holds on players.
+     *
+     * @param playerIds UUIDs of players.
+     */
+    default void release(Collection<UUID> playerIds)
+    {
+        //Do nothing. No leases are kept.
+    }
+
+    /**
+     * Handle players whose save was refused because another server stored them first. Does nothing unless the backend
+     * keeps versions.
+     *
+     * @param handler Called from the saving thread with the players whose save was refused.
+     */
+    default void onConflict(Consumer<Set<UUID>> handler)
+    {
+        //Do nothing. Every save replaces what was there.
+    }
+
+    /**
+     * Type of backend behind this repository.
+     *
+     * @return Storage type.
+     */
+    StorageType getType();
+}
@@ -0,0 +1,452 @@
+package com.clanjhoo.mythicraces.data;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Player counts and level leaderboards of every race, kept up to date as players are stored and removed.
+ *
+ * Only the little needed for the statistics is kept of each stored player. Counts and leaderboards are handed out as
+ * snapshots that are only rebuilt after a change, so reading them is as cheap as reading a field. The aggregates are
+ * written to a checkpoint when the server stops and read back on the next start. A checkpoint is deleted once read,
+ * so after a crash the aggregates are rebuilt from a full scan of the repository instead of trusting stale numbers.
+ */
+@SuppressWarnings("unused")
+public class RaceAggregates
+{
+    private static final int VERSION = 1;
+
+    /**
+     * What is kept of a stored player.
+     */
+    public static final class Entry
+    {
+        private final UUID playerId;
+        private final String username;
+        private final String race;
+        private final int level;
+
+        private Entry(UUID playerId, String username, String race, int level)
+        {
+            this.playerId = playerId;
+            this.username = username;
+            this.race = race;
+            this.level = level;
+        }
+
+        public UUID getPlayerId()
+        {
+            return playerId;
+        }
+
+        public String getUsername()
+        {
+            return username;
+        }
+
+        public String getRace()
+        {
+            return race;
+        }
+
+        public int getLevel()
+        {
+            return level;
+        }
+    }
+
+    //Highest level first, ties broken by UUID so no two players are ever equal.
+    private static final Comparator<Entry> RANKING = Comparator.comparingInt(Entry::getLevel).reversed()
+            .thenComparing(Entry::getPlayerId);
+
+    private final int topSize;
+    private final Map<UUID, Entry> entries;
+    private final Map<String, TreeSet<Entry>> races;
+    private final TreeSet<Entry> overall;
+    private Map<UUID, Entry> rebuilding;
+    private volatile Map<String, Integer> counts;
+    private volatile Map<String, List<Entry>> tops;
+
+    /**
+     * Constructor.
+     *
+     * @param topSize Amount of players on each leaderboard.
+     */
+    public RaceAggregates(int topSize)
+    {
+        this.topSize = Math.max(1, topSize);
+        this.entries = new HashMap<>();
+        this.races = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.overall = new TreeSet<>(RANKING);
+    }
+
+    /**
+     * Count a stored player, replacing what was counted of them before.
+     *
+     * @param racePlayer Race state that was stored.
+     */
+    public synchronized void update(RacePlayer racePlayer)
+    {
+        Entry entry = entry(racePlayer);
+        if (rebuilding != null)
+        {
+            rebuilding.put(entry.playerId, entry);
+        }
+
+        put(entry);
+        changed();
+    }
+
+    /**
+     * Stop counting a removed player.
+     *
+     * @param playerId UUID of player.
+     */
+    public synchronized void remove(UUID playerId)
+    {
+        if (rebuilding != null)
+        {
+            rebuilding.put(playerId, null);
+        }
+
+        if (take(playerId))
+        {
+            changed();
+        }
+    }
+
+    /**
+     * Retrieve the amount of stored players of every race.
+     *
+     * @return Unmodifiable counts by race, sorted by name and looked up ignoring case.
+     */
+    public Map<String, Integer> getCounts()
+    {
+        Map<String, Integer> snapshot = counts;
+        if (snapshot == null)
+        {
+            synchronized (this)
+            {
+                snapshot();
+                snapshot = counts;
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Retrieve the amount of stored players of a race.
+     *
+     * @param race Name of race.
+     * @return Amount of players.
+     */
+    public int getCount(String race)
+    {
+        Integer count = getCounts().get(race);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Retrieve the amount of stored players.
+     *
+     * @return Amount of players.
+     */
+    public synchronized int getTotal()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Retrieve the highest level players of a race.
+     *
+     * @param race Name of race, or null for every race together.
+     * @return Unmodifiable leaderboard from highest to lowest level.
+     */
+    public List<Entry> getTop(String race)
+    {
+        Map<String, List<Entry>> snapshot = tops;
+        if (snapshot == null)
+        {
+            synchronized (this)
+            {
+                snapshot();
+                snapshot = tops;
+            }
+        }
+
+        List<Entry> top = snapshot.get(race == null ? "" : race);
+        return top != null ? top : Collections.emptyList();
+    }
+
+    /**
+     * Recount every player in the repository. Players stored or removed while counting are kept as they were changed.
+     *
+     * @param repository Repository to scan.
+     * @param batchSize Amount of players read at once.
+     * @return Amount of players counted, or -1 if a recount is already running.
+     */
+    public int rebuild(PlayerRepository repository, int batchSize)
+    {
+        synchronized (this)
+        {
+            if (rebuilding != null)
+            {
+                return -1;
+            }
+
+            this.rebuilding = new HashMap<>();
+        }
+
+        List<Entry> scanned = new ArrayList<>();
+        try
+        {
+            repository.forEach(batchSize, (batch) ->
+            {
+                for (RacePlayer racePlayer : batch)
+                {
+                    scanned.add(entry(racePlayer));
+                }
+            });
+        }
+        catch (RuntimeException exception)
+        {
+            synchronized (this)
+            {
+                this.rebuilding = null;
+            }
+
+            throw exception;
+        }
+
+        synchronized (this)
+        {
+            clear();
+            for (Entry entry : scanned)
+            {
+                put(entry);
+            }
+
+            //Changes made while scanning are newer than what was scanned.
+            for (Map.Entry<UUID, Entry> change : rebuilding.entrySet())
+            {
+                if (change.getValue() == null)
+                {
+                    take(change.getKey());
+                }
+                else
+                {
+                    put(change.getValue());
+                }
+            }
+
+            this.rebuilding = null;
+            changed();
+            return entries.size();
+        }
+    }
+
+    /**
+     * Write the aggregates to a checkpoint for the next start.
+     *
+     * @param file File to write.
+     * @param type Storage type the aggregates were counted from.
+     * @throws IOException Expected to throw if the file can not be written.
+     */
+    public synchronized void checkpoint(File file, StorageType type) throws IOException
+    {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporary.toPath()))))
+        {
+            output.writeInt(VERSION);
+            output.writeUTF(type.name());
+            output.writeInt(entries.size());
+            for (Entry entry : entries.values())
+            {
+                output.writeLong(entry.playerId.getMostSignificantBits());
+                output.writeLong(entry.playerId.getLeastSignificantBits());
+                writeNullable(output, entry.username);
+                writeNullable(output, entry.race);
+                output.writeInt(entry.level);
+            }
+        }
+
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read the aggregates from a checkpoint and delete it, so it is never trusted twice.
+     *
+     * @param file File to read.
+     * @param type Storage type in use now.
+     * @return True if the checkpoint was read, false if it is missing, damaged or counted from another storage type.
+     */
+    public synchronized boolean load(File file, StorageType type)
+    {
+        if (!file.exists())
+        {
+            return false;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath()))))
+        {
+            if (input.readInt() != VERSION || !input.readUTF().equals(type.name()))
+            {
+                return false;
+            }
+
+            clear();
+            int size = input.readInt();
+            for (int index = 0; index < size; index++)
+            {
+                UUID playerId = new UUID(input.readLong(), input.readLong());
+                String username = readNullable(input);
+                String race = readNullable(input);
+                put(new Entry(playerId, username, race == null ? null : race.intern(), input.readInt()));
+            }
+
+            changed();
+            return true;
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace();
+            clear();
+            changed();
+            return false;
+        }
+        finally
+        {
+            if (!file.delete())
+            {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    private void put(Entry entry)
+    {
+        take(entry.playerId);
+        entries.put(entry.playerId, entry);
+        overall.add(entry);
+        if (entry.race != null)
+        {
+            races.computeIfAbsent(entry.race, (race) -> new TreeSet<>(RANKING)).add(entry);
+        }
+    }
+
+    private boolean take(UUID playerId)
+    {
+        Entry previous = entries.remove(playerId);
+        if (previous == null)
+        {
+            return false;
+        }
+
+        overall.remove(previous);
+        if (previous.race != null)
+        {
+            TreeSet<Entry> members = races.get(previous.race);
+            if (members != null)
+            {
+                members.remove(previous);
+                if (members.isEmpty())
+                {
+                    races.remove(previous.race);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private void clear()
+    {
+        entries.clear();
+        races.clear();
+        overall.clear();
+    }
+
+    private void changed()
+    {
+        this.counts = null;
+        this.tops = null;
+    }
+
+    /**
+     * Build the snapshots handed out until the next change. To be called while holding the lock.
+     */
+    private void snapshot()
+    {
+        if (counts != null && tops != null)
+        {
+            return;
+        }
+
+        Map<String, Integer> newCounts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Map<String, List<Entry>> newTops = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, TreeSet<Entry>> race : races.entrySet())
+        {
+            newCounts.put(race.getKey(), race.getValue().size());
+            newTops.put(race.getKey(), top(race.getValue()));
+        }
+
+        newTops.put("", top(overall));
+        this.tops = Collections.unmodifiableMap(newTops);
+        this.counts = Collections.unmodifiableMap(newCounts);
+    }
+
+    private List<Entry> top(TreeSet<Entry> members)
+    {
+        List<Entry> top = new ArrayList<>(Math.min(topSize, members.size()));
+        Iterator<Entry> iterator = members.iterator();
+        while (iterator.hasNext() && top.size() < topSize)
+        {
+            top.add(iterator.next());
+        }
+
+        return Collections.unmodifiableList(top);
+    }
+
+    private static Entry entry(RacePlayer racePlayer)
+    {
+        String race = racePlayer.getRace();
+        return new Entry(racePlayer.getPlayerId(), racePlayer.getUsername(), race == null ? null : race.intern(),
+                racePlayer.getLevel());
+    }
+
+    private static void writeNullable(DataOutputStream output, String value) throws IOException
+    {
+        output.writeBoolean(value != null);
+        if (value != null)
+        {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream input) throws IOException
+    {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+}
@@ -0,0 +1,81 @@
+package com.clanjhoo.mythicraces.data;
+
+import com.github.rfsmassacre.heavenlibrary.files.BackupArchiver;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Backs up stored players while the server keeps running.
+ *
+ * The repository takes a snapshot first, which only briefly holds up writes. The snapshot is then packed into an
+ * archive at a limited rate. To be run off the main thread.
+ */
+public class RepositoryBackup
+{
+    private final PlayerRepository repository;
+    private final File folder;
+    private final BackupArchiver archiver;
+    private final AtomicBoolean running;
+
+    /**
+     * Constructor.
+     *
+     * @param repository Repository to back up.
+     * @param folder Folder archives are kept in.
+     * @param keep Amount of archives kept.
+     * @param bytesPerSecond Most bytes read per second while archiving, or 0 for no limit.
+     */
+    public RepositoryBackup(PlayerRepository repository, File folder, int keep, long bytesPerSecond)
+    {
+        this.repository = repository;
+        this.folder = folder;
+        this.archiver = new BackupArchiver(folder, keep, bytesPerSecond);
+        this.running = new AtomicBoolean();
+    }
+
+    /**
+     * Check whether the repository can be backed up from this server.
+     *
+     * @return True unless the data is kept on a database server.
+     */
+    public boolean isSupported()
+    {
+        return repository.getType() != StorageType.MYSQL;
+    }
+
+    /**
+     * Snapshot and archive the repository. Nothing happens if a backup is already running.
+     *
+     * @return Archive written, or null if a backup was already running.
+     * @throws IOException Expected to throw if the snapshot or archive could not be written.
+     */
+    public File run() throws IOException
+    {
+        if (!running.compareAndSet(false, true))
+        {
+            return null;
+        }
+
+        String name = repository.getType().name().toLowerCase() + "-" +
+                new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
+        File snapshot = new File(folder, "." + name);
+        try
+        {
+            repository.snapshot(snapshot);
+            return archiver.archive(snapshot, name);
+        }
+        catch (IOException | RuntimeException exception)
+        {
+            archiver.deleteFolder(snapshot);
+            throw exception;
+        }
+        finally
+        {
+            running.set(false);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.clanjhoo.mythicraces.data;
+
+/**
+ * Copies every stored player from one repository to another in batches. Copies replace what the target holds, even
+ * if its version is newer, and players the target failed to store are counted apart from those migrated.
+ */
+public class RepositoryMigration
+{
+    private final PlayerRepository source;
+    private final PlayerRepository target;
+    private final int batchSize;
+    private long migrated;
+    private long failed;
+
+    /**
+     * Constructor.
+     *
+     * @param source Repository to read players from.
+     * @param target Repository to write players into.
+     * @param batchSize Maximum amount of players held in memory at once.
+     */
+    public RepositoryMigration(PlayerRepository source, PlayerRepository target, int batchSize)
+    {
+        this.source = source;
+        this.target = target;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Stream every player from the source into the target. Blocks until done, so run it off the main thread.
+     *
+     * @return Amount of players migrated.
+     */
+    public long run()
+    {
+        source.forEach(batchSize, (batch) ->
+        {
+            int stored = target.storeUnversioned(batch);
+            migrated += stored;
+            failed += batch.size() - stored;
+        });
+
+        return migrated;
+    }
+
+    /**
+     * Amount of players migrated so far.
+     *
+     * @return Amount of players.
+     */
+    public long getMigrated()
+    {
+        return migrated;
+    }
+
+    /**
+     * Amount of players the target failed to store so far.
+     *
+     * @return Amount of players.
+     */
+    public long getFailed()
+    {
+        return failed;
+    }
+}
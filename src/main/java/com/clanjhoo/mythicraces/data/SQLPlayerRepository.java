@@ -0,0 +1,332 @@
+package com.clanjhoo.mythicraces.data;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import com.github.rfsmassacre.heavenlibrary.databases.Schema;
+import com.github.rfsmassacre.heavenlibrary.databases.VersionedRecords;
+import com.github.rfsmassacre.heavenlibrary.interfaces.SQLData;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Shares the player table layout and queries between every SQL backend.
+ *
+ * Players are saved through versioned records, so a server never overwrites a player another server saved since it
+ * was loaded, unless it owns the player through a lease.
+ */
+interface SQLPlayerRepository extends PlayerRepository, SQLData<RacePlayer>
+{
+    String TABLE = "mythicraces_players";
+    String[] COLUMNS = new String[]
+    {
+        "player_id VARCHAR(36) NOT NULL PRIMARY KEY",
+        "username VARCHAR(16)",
+        "race VARCHAR(64)",
+        "race_level INT NOT NULL DEFAULT 1",
+        VersionedRecords.COLUMNS[0],
+        VersionedRecords.COLUMNS[1],
+        VersionedRecords.COLUMNS[2]
+    };
+
+    //Race is indexed for leaderboard and per race lookups.
+    Schema SCHEMA = new Schema(TABLE, COLUMNS)
+            .migration(1, "Add record versions and ownership leases", VersionedRecords.migration(TABLE))
+            .index(TABLE + "_race", "race");
+
+    String FIELDS = "player_id, username, race, race_level, version";
+    String SELECT = "SELECT " + FIELDS + " FROM " + TABLE + " WHERE player_id = ?";
+    String SELECT_PAGE = "SELECT " + FIELDS + " FROM " + TABLE + " WHERE player_id > ? ORDER BY player_id LIMIT ?";
+    String SELECT_MANY = "SELECT " + FIELDS + " FROM " + TABLE + " WHERE player_id IN ";
+    String SELECT_RACE = "SELECT " + FIELDS + " FROM " + TABLE + " WHERE race = ?";
+    String DELETE = "DELETE FROM " + TABLE + " WHERE player_id = ?";
+    int LOAD_BATCH = 100;
+
+    //Implemented by SQLDatabase.
+    List<RacePlayer> query(String sql, Object... parameters);
+
+    List<RacePlayer> queryStrict(String sql, Object... parameters) throws SQLException;
+
+    int execute(String sql, Object... parameters);
+
+    void applySchema(Schema schema);
+
+    /**
+     * Retrieve the versioned records players are saved through. Created once the table exists.
+     *
+     * @return Versioned records of the player table.
+     */
+    VersionedRecords getRecords();
+
+    /**
+     * Create player table if it does not exist yet and bring it up to date.
+     */
+    default void createTable()
+    {
+        applySchema(SCHEMA);
+    }
+
+    @Override
+    default RacePlayer load(UUID playerId)
+    {
+        try
+        {
+            List<RacePlayer> racePlayers = queryStrict(SELECT, playerId.toString());
+            return racePlayers.isEmpty() ? null : racePlayers.get(0);
+        }
+        catch (SQLException exception)
+        {
+            throw new StorageException("Could not load player " + playerId + ".", exception);
+        }
+    }
+
+    @Override
+    default List<RacePlayer> loadAll(Collection<UUID> playerIds)
+    {
+        List<RacePlayer> racePlayers = new ArrayList<>(playerIds.size());
+        List<Object> batch = new ArrayList<>(LOAD_BATCH);
+        try
+        {
+            for (UUID playerId : playerIds)
+            {
+                batch.add(playerId.toString());
+                if (batch.size() >= LOAD_BATCH)
+                {
+                    racePlayers.addAll(queryStrict(SELECT_MANY + inList(batch.size()), batch.toArray()));
+                    batch.clear();
+                }
+            }
+
+            if (!batch.isEmpty())
+            {
+                racePlayers.addAll(queryStrict(SELECT_MANY + inList(batch.size()), batch.toArray()));
+            }
+        }
+        catch (SQLException exception)
+        {
+            throw new StorageException("Could not load " + playerIds.size() + " players.", exception);
+        }
+
+        return racePlayers;
+    }
+
+    @Override
+    default boolean store(RacePlayer racePlayer)
+    {
+        return store(racePlayer, false);
+    }
+
+    @Override
+    default boolean storeAndRelease(RacePlayer racePlayer)
+    {
+        return store(racePlayer, true);
+    }
+
+    /**
+     * Store race state of player unless another server stored a newer one it does not own.
+     *
+     * @param racePlayer Race state to store. Its version is moved up once stored, but not if the write failed or was
+     *                   spooled, so a spooled write only holds up while the lease on the player is live.
+     * @param release Give up the lease on the player in the same write.
+     * @return True if stored. False if the write failed, was spooled or was refused.
+     */
+    default boolean store(RacePlayer racePlayer, boolean release)
+    {
+        long version = getRecords().save(racePlayer.getPlayerId().toString(), racePlayer.getVersion(), release,
+                toValues(racePlayer));
+        if (version > 0)
+        {
+            racePlayer.setVersion(version);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    default List<RacePlayer> storeAll(Collection<RacePlayer> racePlayers)
+    {
+        List<RacePlayer> ordered = new ArrayList<>(racePlayers);
+        List<String> keys = new ArrayList<>(ordered.size());
+        long[] versions = new long[ordered.size()];
+        List<Object[]> values = new ArrayList<>(ordered.size());
+        for (int index = 0; index < ordered.size(); index++)
+        {
+            RacePlayer racePlayer = ordered.get(index);
+            keys.add(racePlayer.getPlayerId().toString());
+            versions[index] = racePlayer.getVersion();
+            values.add(toValues(racePlayer));
+        }
+
+        long[] results = getRecords().saveAll(keys, versions, values);
+        List<RacePlayer> stored = new ArrayList<>(ordered.size());
+        for (int index = 0; index < results.length; index++)
+        {
+            if (results[index] > 0)
+            {
+                ordered.get(index).setVersion(results[index]);
+                stored.add(ordered.get(index));
+            }
+        }
+
+        return stored;
+    }
+
+    @Override
+    default int storeUnversioned(Collection<RacePlayer> racePlayers)
+    {
+        List<String> keys = new ArrayList<>(racePlayers.size());
+        List<Object[]> values = new ArrayList<>(racePlayers.size());
+        for (RacePlayer racePlayer : racePlayers)
+        {
+            keys.add(racePlayer.getPlayerId().toString());
+            values.add(toValues(racePlayer));
+        }
+
+        return getRecords().overwriteAll(keys, values);
+    }
+
+    @Override
+    default boolean acquire(UUID playerId, long leaseMillis)
+    {
+        return getRecords().acquire(playerId.toString(), leaseMillis);
+    }
+
+    @Override
+    default void renew(Collection<UUID> playerIds, long leaseMillis)
+    {
+        getRecords().renew(toKeys(playerIds), leaseMillis);
+    }
+
+    @Override
+    default void release(Collection<UUID> playerIds)
+    {
+        getRecords().release(toKeys(playerIds));
+    }
+
+    @Override
+    default void onConflict(Consumer<Set<UUID>> handler)
+    {
+        getRecords().onConflict((keys) ->
+        {
+            Set<UUID> playerIds = new LinkedHashSet<>(keys.size());
+            for (String key : keys)
+            {
+                playerIds.add(UUID.fromString(key));
+            }
+
+            handler.accept(playerIds);
+        });
+    }
+
+    @Override
+    default void remove(UUID playerId)
+    {
+        execute(DELETE, playerId.toString());
+    }
+
+    @Override
+    default List<RacePlayer> findByRace(String race)
+    {
+        return query(SELECT_RACE, race);
+    }
+
+    @Override
+    default void forEach(int batchSize, Consumer<List<RacePlayer>> task)
+    {
+        String lastId = "";
+        List<RacePlayer> batch = query(SELECT_PAGE, lastId, batchSize);
+        while (!batch.isEmpty())
+        {
+            task.accept(batch);
+            if (batch.size() < batchSize)
+            {
+                return;
+            }
+
+            lastId = batch.get(batch.size() - 1).getPlayerId().toString();
+            batch = query(SELECT_PAGE, lastId, batchSize);
+        }
+    }
+
+    @Override
+    default void save(RacePlayer racePlayer)
+    {
+        store(racePlayer, false);
+    }
+
+    @Override
+    default List<RacePlayer> load(ResultSet result) throws SQLException
+    {
+        List<RacePlayer> racePlayers = new ArrayList<>();
+        while (result.next())
+        {
+            RacePlayer racePlayer = new RacePlayer();
+            racePlayer.setPlayerId(UUID.fromString(result.getString("player_id")));
+            racePlayer.setUsername(result.getString("username"));
+            racePlayer.setRace(result.getString("race"));
+            racePlayer.setLevel(result.getInt("race_level"));
+            racePlayer.setVersion(result.getLong("version"));
+            racePlayers.add(racePlayer);
+        }
+
+        return racePlayers;
+    }
+
+    @Override
+    default void delete(RacePlayer racePlayer)
+    {
+        remove(racePlayer.getPlayerId());
+    }
+
+    /**
+     * Build the parenthesized list of ? placeholders for an IN clause.
+     *
+     * @param amount Amount of placeholders.
+     * @return Placeholders such as (?, ?, ?).
+     */
+    static String inList(int amount)
+    {
+        return "(" + String.join(", ", Collections.nCopies(amount, "?")) + ")";
+    }
+
+    /**
+     * Break player down into the values of the data columns in order.
+     *
+     * @param racePlayer Race state of player.
+     * @return Column values.
+     */
+    static Object[] toValues(RacePlayer racePlayer)
+    {
+        return new Object[]
+        {
+            racePlayer.getUsername(),
+            racePlayer.getRace(),
+            racePlayer.getLevel()
+        };
+    }
+
+    /**
+     * Turn player UUIDs into the keys of their rows.
+     *
+     * @param playerIds UUIDs of players.
+     * @return Row keys.
+     */
+    static List<String> toKeys(Collection<UUID> playerIds)
+    {
+        List<String> keys = new ArrayList<>(playerIds.size());
+        for (UUID playerId : playerIds)
+        {
+            keys.add(playerId.toString());
+        }
+
+        return keys;
+    }
+}
@@ -0,0 +1,42 @@
+package com.clanjhoo.mythicraces.data;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import com.github.rfsmassacre.heavenlibrary.databases.SQLiteDatabase;
+import com.github.rfsmassacre.heavenlibrary.databases.VersionedRecords;
+
+/**
+ * Stores every player's race data in a SQLite database file.
+ */
+public class SQLitePlayerRepository extends SQLiteDatabase<RacePlayer> implements SQLPlayerRepository
+{
+    private final VersionedRecords records;
+
+    public SQLitePlayerRepository(String absolutePath, String database)
+    {
+        super(absolutePath, database, "player_id", COLUMNS);
+
+        createTable();
+        this.records = new VersionedRecords(this, TABLE, "player_id", "username", "race", "race_level");
+    }
+
+    public SQLitePlayerRepository(String absolutePath, String database, int readers, String synchronous,
+                                  int cacheSize, long mmapSize)
+    {
+        super(absolutePath, database, readers, synchronous, cacheSize, mmapSize, "player_id", COLUMNS);
+
+        createTable();
+        this.records = new VersionedRecords(this, TABLE, "player_id", "username", "race", "race_level");
+    }
+
+    @Override
+    public VersionedRecords getRecords()
+    {
+        return records;
+    }
+
+    @Override
+    public StorageType getType()
+    {
+        return StorageType.SQLITE;
+    }
+}
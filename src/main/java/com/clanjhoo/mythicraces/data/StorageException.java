@@ -0,0 +1,12 @@
+package com.clanjhoo.mythicraces.data;
+
+/**
+ * Thrown when stored players could not be read, as opposed to there being nothing stored for them.
+ */
+public class StorageException extends RuntimeException
+{
+    public StorageException(String message, Throwable cause)
+    {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,32 @@
+package com.clanjhoo.mythicraces.data;
+
+/**
+ * Every backend player data can be stored in.
+ */
+public enum StorageType
+{
+    JSON,
+    YAML,
+    SQLITE,
+    H2,
+    MYSQL;
+
+    /**
+     * Retrieve storage type from name while ignoring case.
+     *
+     * @param name Name of storage type.
+     * @return Storage type or null if there is none with that name.
+     */
+    public static StorageType fromName(String name)
+    {
+        for (StorageType type : values())
+        {
+            if (type.name().equalsIgnoreCase(name))
+            {
+                return type;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,53 @@
+package com.clanjhoo.mythicraces.effects;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Handles the name, period and races every effect is configured with.
+ */
+public abstract class AbstractRaceEffect implements RaceEffect
+{
+    private final String name;
+    private final int period;
+    private final Set<String> races;
+
+    /**
+     * Constructor.
+     *
+     * @param name Name of effect.
+     * @param period Ticks between each application.
+     * @param races Races receiving the effect.
+     */
+    protected AbstractRaceEffect(String name, int period, List<String> races)
+    {
+        this.name = name;
+        this.period = Math.max(1, period);
+        this.races = new HashSet<>();
+        for (String race : races)
+        {
+            this.races.add(race.toLowerCase());
+        }
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public int getPeriod()
+    {
+        return period;
+    }
+
+    @Override
+    public boolean appliesTo(RacePlayer racePlayer)
+    {
+        return racePlayer.getRace() != null && races.contains(racePlayer.getRace().toLowerCase());
+    }
+}
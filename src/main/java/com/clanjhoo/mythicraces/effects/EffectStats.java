@@ -0,0 +1,67 @@
+package com.clanjhoo.mythicraces.effects;
+
+/**
+ * Cost of a single race effect. Only ever updated from the main thread.
+ */
+public class EffectStats
+{
+    private final String name;
+    private long runs;
+    private long totalNanos;
+    private long maxNanos;
+
+    public EffectStats(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Record one application of the effect.
+     *
+     * @param nanos Time it took in nanoseconds.
+     */
+    void record(long nanos)
+    {
+        runs++;
+        totalNanos += nanos;
+        if (nanos > maxNanos)
+        {
+            maxNanos = nanos;
+        }
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    void reset()
+    {
+        runs = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getRuns()
+    {
+        return runs;
+    }
+
+    public long getTotalNanos()
+    {
+        return totalNanos;
+    }
+
+    public long getMaxNanos()
+    {
+        return maxNanos;
+    }
+
+    public long getAverageNanos()
+    {
+        return runs == 0 ? 0 : totalNanos / runs;
+    }
+}
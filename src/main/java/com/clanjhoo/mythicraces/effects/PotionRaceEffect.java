@@ -0,0 +1,34 @@
+package com.clanjhoo.mythicraces.effects;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+
+import java.util.List;
+
+/**
+ * Keeps a potion effect such as night vision, regeneration or speed on the player.
+ */
+public class PotionRaceEffect extends AbstractRaceEffect
+{
+    //Night vision starts flashing under 10 seconds left, so always leave more than that.
+    private static final int EXTRA_TICKS = 220;
+
+    private final PotionEffectType type;
+    private final int amplifier;
+
+    public PotionRaceEffect(String name, int period, List<String> races, PotionEffectType type, int amplifier)
+    {
+        super(name, period, races);
+
+        this.type = type;
+        this.amplifier = amplifier;
+    }
+
+    @Override
+    public void apply(Player player, RacePlayer racePlayer)
+    {
+        player.addPotionEffect(new PotionEffect(type, getPeriod() + EXTRA_TICKS, amplifier, true, false));
+    }
+}
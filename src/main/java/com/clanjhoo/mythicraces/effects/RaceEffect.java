@@ -0,0 +1,40 @@
+package com.clanjhoo.mythicraces.effects;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import org.bukkit.entity.Player;
+
+/**
+ * Periodic passive given to players of certain races.
+ */
+public interface RaceEffect
+{
+    /**
+     * Name used in the configuration and cost reports.
+     *
+     * @return Name of effect.
+     */
+    String getName();
+
+    /**
+     * Ticks between each time the effect is applied to the same player.
+     *
+     * @return Period in ticks.
+     */
+    int getPeriod();
+
+    /**
+     * Check whether the player's race receives this effect.
+     *
+     * @param racePlayer Race state of player.
+     * @return True if the effect applies.
+     */
+    boolean appliesTo(RacePlayer racePlayer);
+
+    /**
+     * Apply effect to player. Always called on the main thread.
+     *
+     * @param player Player receiving the effect.
+     * @param racePlayer Race state of player.
+     */
+    void apply(Player player, RacePlayer racePlayer);
+}
@@ -0,0 +1,266 @@
+package com.clanjhoo.mythicraces.effects;
+
+import com.clanjhoo.mythicraces.players.PlayerRegistry;
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Applies race effects every tick while spreading players across ticks.
+ *
+ * Every effect splits online players into as many buckets as its period, so each tick only the players in one bucket
+ * are due. Due work is queued and processed until the tick's time budget runs out, with whatever is left over carried
+ * into the next tick instead of stretching the current one.
+ */
+@SuppressWarnings("unused")
+public class RaceEffectScheduler extends BukkitRunnable
+{
+    private final PlayerRegistry registry;
+    private final long budgetNanos;
+    private final List<RaceEffect> effects;
+    private final Map<RaceEffect, List<Set<UUID>>> buckets;
+    private final Map<String, EffectStats> stats;
+    private final Set<UUID> players;
+    private final ArrayDeque<Task> queue;
+    private final Set<Task> queued;
+    private long tick;
+    private long carriedOver;
+    private long ticksOverBudget;
+
+    /**
+     * Constructor.
+     *
+     * @param registry Registry holding the race state of online players.
+     * @param budgetNanos Maximum time in nanoseconds spent on effects in a single tick.
+     */
+    public RaceEffectScheduler(PlayerRegistry registry, long budgetNanos)
+    {
+        this.registry = registry;
+        this.budgetNanos = budgetNanos;
+        this.effects = new ArrayList<>();
+        this.buckets = new LinkedHashMap<>();
+        this.stats = new LinkedHashMap<>();
+        this.players = new HashSet<>();
+        this.queue = new ArrayDeque<>();
+        this.queued = new HashSet<>();
+    }
+
+    /**
+     * Register effect to be applied. Players already added are spread into its buckets as well.
+     *
+     * @param effect Race effect.
+     */
+    public void addEffect(RaceEffect effect)
+    {
+        List<Set<UUID>> effectBuckets = new ArrayList<>(effect.getPeriod());
+        for (int bucket = 0; bucket < effect.getPeriod(); bucket++)
+        {
+            effectBuckets.add(new HashSet<>());
+        }
+
+        for (UUID playerId : players)
+        {
+            effectBuckets.get(slot(playerId, effect.getPeriod())).add(playerId);
+        }
+
+        effects.add(effect);
+        buckets.put(effect, effectBuckets);
+        stats.put(effect.getName(), new EffectStats(effect.getName()));
+    }
+
+    /**
+     * Start receiving effects for player.
+     *
+     * @param playerId UUID of player.
+     */
+    public void addPlayer(UUID playerId)
+    {
+        players.add(playerId);
+        for (RaceEffect effect : effects)
+        {
+            buckets.get(effect).get(slot(playerId, effect.getPeriod())).add(playerId);
+        }
+    }
+
+    /**
+     * Stop receiving effects for player.
+     *
+     * @param playerId UUID of player.
+     */
+    public void removePlayer(UUID playerId)
+    {
+        players.remove(playerId);
+        for (RaceEffect effect : effects)
+        {
+            buckets.get(effect).get(slot(playerId, effect.getPeriod())).remove(playerId);
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        long start = System.nanoTime();
+        long deadline = start + budgetNanos;
+
+        //Queue up only the players due this tick.
+        for (RaceEffect effect : effects)
+        {
+            for (UUID playerId : buckets.get(effect).get((int) (tick % effect.getPeriod())))
+            {
+                Task task = new Task(effect, playerId);
+                if (queued.add(task))
+                {
+                    queue.add(task);
+                }
+            }
+        }
+
+        tick++;
+
+        //Always make progress on at least one task, even if the previous one blew the budget.
+        long now = start;
+        while (!queue.isEmpty() && (now < deadline || now == start))
+        {
+            Task task = queue.poll();
+            queued.remove(task);
+            apply(task);
+            now = System.nanoTime();
+        }
+
+        if (!queue.isEmpty())
+        {
+            carriedOver += queue.size();
+            ticksOverBudget++;
+        }
+    }
+
+    /**
+     * Retrieve the cost of every effect.
+     *
+     * @return Unmodifiable view of effect stats in registration order.
+     */
+    public Map<String, EffectStats> getStats()
+    {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * Total amount of tasks pushed back to a later tick because the budget ran out.
+     *
+     * @return Amount of tasks.
+     */
+    public long getCarriedOver()
+    {
+        return carriedOver;
+    }
+
+    /**
+     * Amount of ticks that ended with tasks still queued.
+     *
+     * @return Amount of ticks.
+     */
+    public long getTicksOverBudget()
+    {
+        return ticksOverBudget;
+    }
+
+    /**
+     * Amount of tasks waiting for the next tick.
+     *
+     * @return Amount of tasks.
+     */
+    public int getBacklog()
+    {
+        return queue.size();
+    }
+
+    public long getBudgetNanos()
+    {
+        return budgetNanos;
+    }
+
+    /**
+     * Forget all recorded costs.
+     */
+    public void resetStats()
+    {
+        for (EffectStats effectStats : stats.values())
+        {
+            effectStats.reset();
+        }
+
+        carriedOver = 0;
+        ticksOverBudget = 0;
+    }
+
+    private void apply(Task task)
+    {
+        Player player = Bukkit.getPlayer(task.playerId);
+        RacePlayer racePlayer = registry.get(task.playerId);
+        if (player == null || racePlayer == null || !task.effect.appliesTo(racePlayer))
+        {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try
+        {
+            task.effect.apply(player, racePlayer);
+        }
+        catch (Exception exception)
+        {
+            exception.printStackTrace();
+        }
+
+        stats.get(task.effect.getName()).record(System.nanoTime() - start);
+    }
+
+    private static int slot(UUID playerId, int period)
+    {
+        return Math.floorMod(playerId.hashCode(), period);
+    }
+
+    /**
+     * Single effect due for a single player.
+     */
+    private static final class Task
+    {
+        private final RaceEffect effect;
+        private final UUID playerId;
+
+        private Task(RaceEffect effect, UUID playerId)
+        {
+            this.effect = effect;
+            this.playerId = playerId;
+        }
+
+        @Override
+        public boolean equals(Object object)
+        {
+            if (!(object instanceof Task))
+            {
+                return false;
+            }
+
+            Task other = (Task) object;
+            return effect == other.effect && playerId.equals(other.playerId);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * System.identityHashCode(effect) + playerId.hashCode();
+        }
+    }
+}
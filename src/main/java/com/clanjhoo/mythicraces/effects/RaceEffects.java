@@ -0,0 +1,55 @@
+package com.clanjhoo.mythicraces.effects;
+
+import com.github.rfsmassacre.heavenlibrary.files.configs.Configuration;
+import org.bukkit.potion.PotionEffectType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the race effects defined in the configuration.
+ */
+public final class RaceEffects
+{
+    private RaceEffects()
+    {
+        //Do nothing. Utility class.
+    }
+
+    /**
+     * Create every effect under "effects" that has at least one race assigned.
+     *
+     * @param configuration Configuration holding the effects.
+     * @return Race effects.
+     */
+    public static List<RaceEffect> fromConfiguration(Configuration configuration)
+    {
+        List<RaceEffect> effects = new ArrayList<>();
+        addPotion(effects, configuration, "night-vision", PotionEffectType.NIGHT_VISION);
+        addPotion(effects, configuration, "regeneration", PotionEffectType.REGENERATION);
+        addPotion(effects, configuration, "speed", PotionEffectType.SPEED);
+
+        List<String> races = configuration.getStringList("effects.sun-damage.races");
+        if (!races.isEmpty())
+        {
+            effects.add(new SunDamageEffect("sun-damage", configuration.getInt("effects.sun-damage.period"), races,
+                    configuration.getDouble("effects.sun-damage.damage")));
+        }
+
+        return effects;
+    }
+
+    private static void addPotion(List<RaceEffect> effects, Configuration configuration, String name,
+                                  PotionEffectType type)
+    {
+        String path = "effects." + name;
+        List<String> races = configuration.getStringList(path + ".races");
+        if (races.isEmpty())
+        {
+            return;
+        }
+
+        effects.add(new PotionRaceEffect(name, configuration.getInt(path + ".period"), races, type,
+                configuration.getInt(path + ".amplifier")));
+    }
+}
@@ -0,0 +1,53 @@
+package com.clanjhoo.mythicraces.effects;
+
+import com.clanjhoo.mythicraces.players.RacePlayer;
+import org.bukkit.GameMode;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+
+/**
+ * Burns players standing under direct sunlight.
+ */
+public class SunDamageEffect extends AbstractRaceEffect
+{
+    private static final long SUNSET = 12300L;
+    private static final long SUNRISE = 23850L;
+
+    private final double damage;
+
+    public SunDamageEffect(String name, int period, List<String> races, double damage)
+    {
+        super(name, period, races);
+
+        this.damage = damage;
+    }
+
+    @Override
+    public void apply(Player player, RacePlayer racePlayer)
+    {
+        GameMode gameMode = player.getGameMode();
+        if (gameMode == GameMode.CREATIVE || gameMode == GameMode.SPECTATOR)
+        {
+            return;
+        }
+
+        World world = player.getWorld();
+        long time = world.getTime();
+        if (world.getEnvironment() != World.Environment.NORMAL || (time >= SUNSET && time < SUNRISE) ||
+                world.hasStorm())
+        {
+            return;
+        }
+
+        Block block = player.getEyeLocation().getBlock();
+        if (block.getLightFromSky() < 15 || block.isLiquid())
+        {
+            return;
+        }
+
+        player.damage(damage);
+    }
+}
@@ -0,0 +1,80 @@
+package com.clanjhoo.mythicraces.listeners;
+
+import com.clanjhoo.mythicraces.effects.RaceEffectScheduler;
+import com.clanjhoo.mythicraces.players.PlayerRegistry;
+import com.github.rfsmassacre.heavenlibrary.files.configs.LanguageManager;
+import com.github.rfsmassacre.heavenlibrary.files.configs.Locale;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLocaleChangeEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Prefetches race state while logging in, pins it on join and saves it on quit, tracks each player's language, and
+ * keeps the effect scheduler in sync.
+ */
+public class PlayerListener implements Listener
+{
+    private final JavaPlugin plugin;
+    private final PlayerRegistry registry;
+    private final RaceEffectScheduler effectScheduler;
+    private final LanguageManager languages;
+
+    public PlayerListener(JavaPlugin plugin, PlayerRegistry registry, RaceEffectScheduler effectScheduler,
+                          LanguageManager languages)
+    {
+        this.plugin = plugin;
+        this.registry = registry;
+        this.effectScheduler = effectScheduler;
+        this.languages = languages;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event)
+    {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED)
+        {
+            registry.prefetch(event.getUniqueId(), event.getName());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event)
+    {
+        Player player = event.getPlayer();
+        registry.load(player).exceptionally((exception) ->
+        {
+            //Playing on without their stored race state would only make changes that can not be saved.
+            Bukkit.getScheduler().runTask(plugin, () ->
+            {
+                if (player.isOnline() && !registry.isLoaded(player.getUniqueId()))
+                {
+                    player.kickPlayer(Locale.format(languages.getMessage(player, "storage.load-failed", false)));
+                }
+            });
+            return null;
+        });
+        effectScheduler.addPlayer(player.getUniqueId());
+        languages.addPlayer(player);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLocaleChange(PlayerLocaleChangeEvent event)
+    {
+        languages.setLanguage(event.getPlayer().getUniqueId(), event.getLocale());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event)
+    {
+        effectScheduler.removePlayer(event.getPlayer().getUniqueId());
+        registry.unload(event.getPlayer());
+        languages.removePlayer(event.getPlayer().getUniqueId());
+    }
+}
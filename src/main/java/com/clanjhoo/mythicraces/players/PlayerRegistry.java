@@ -0,0 +1,549 @@
+package com.clanjhoo.mythicraces.players;
+
+import com.clanjhoo.mythicraces.data.PlayerRepository;
+import com.clanjhoo.mythicraces.data.StorageException;
+import com.github.rfsmassacre.heavenlibrary.files.GsonJournal;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the race state of every online player in memory.
+ *
+ * Players are loaded asynchronously when they join, pinned for as long as they are online, then written back and
+ * evicted when they quit. Lookups are a single hash lookup and never touch the disk.
+ *
+ * Loading can start earlier while the player is still logging in. The result is staged for a short time and handed
+ * over on join, so most players have their race state from the first tick they are online.
+ *
+ * Changes made through the registry are appended to a journal right away, so they survive a crash until the next
+ * full save makes them redundant.
+ *
+ * When other servers share the repository, players they store are reloaded here, and the stored copy replaces the one
+ * in memory. Online players are leased so saves from this server win over stale saves from others, and a save that
+ * was refused reloads the player instead.
+ */
+@SuppressWarnings("unused")
+public class PlayerRegistry
+{
+    private final JavaPlugin plugin;
+    private final CompletableFuture<PlayerRepository> repository;
+    private final Executor executor;
+    private final String defaultRace;
+    private final Map<UUID, RacePlayer> players;
+    private final Map<UUID, RacePlayer> saving;
+    private final Set<UUID> online;
+    private final Map<UUID, Staged> staging;
+    private final long prefetchTimeout;
+    private final long prefetchTtl;
+    private final GsonJournal<RacePlayer> journal;
+    private final long leaseMillis;
+    private final Set<UUID> leased;
+
+    /**
+     * Race state loaded before the player joined.
+     */
+    private static final class Staged
+    {
+        private final CompletableFuture<RacePlayer> future;
+        private final long expiresAt;
+
+        private Staged(CompletableFuture<RacePlayer> future, long expiresAt)
+        {
+            this.future = future;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now)
+        {
+            return now - expiresAt > 0;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param plugin JavaPlugin handling this registry.
+     * @param repository Repository to load and save players with, which may still be connecting.
+     * @param defaultRace Race given to players without any stored data.
+     * @param prefetchTimeout Milliseconds a login waits on its prefetch before going ahead without it.
+     * @param prefetchTtl Milliseconds prefetched race state is kept for a player who has not joined yet.
+     * @param journal Journal changes are recorded in until saved, or null to only save on quit and autosave.
+     */
+    public PlayerRegistry(JavaPlugin plugin, CompletableFuture<PlayerRepository> repository, String defaultRace,
+                          long prefetchTimeout, long prefetchTtl, GsonJournal<RacePlayer> journal)
+    {
+        this(plugin, repository, defaultRace, prefetchTimeout, prefetchTtl, journal, 0L,
+                (task) -> Bukkit.getScheduler().runTaskAsynchronously(plugin, task));
+    }
+
+    /**
+     * Constructor leasing online players and loading them on an executor of their own.
+     *
+     * @param leaseMillis Milliseconds a lease on an online player lasts unless renewed, or 0 to never lease. Players
+     *                    are only leased while the repository is shared with other servers.
+     * @param executor Executor players are loaded and saved on.
+     */
+    public PlayerRegistry(JavaPlugin plugin, CompletableFuture<PlayerRepository> repository, String defaultRace,
+                          long prefetchTimeout, long prefetchTtl, GsonJournal<RacePlayer> journal, long leaseMillis,
+                          Executor executor)
+    {
+        this.plugin = plugin;
+        this.repository = repository;
+        this.executor = executor;
+        this.defaultRace = defaultRace;
+        this.players = new ConcurrentHashMap<>();
+        this.saving = new ConcurrentHashMap<>();
+        this.online = ConcurrentHashMap.newKeySet();
+        this.staging = new ConcurrentHashMap<>();
+        this.prefetchTimeout = prefetchTimeout;
+        this.prefetchTtl = prefetchTtl;
+        this.journal = journal;
+        this.leaseMillis = leaseMillis;
+        this.leased = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Retrieve race state of an online player.
+     *
+     * @param playerId UUID of player.
+     * @return Race state of player or null if not loaded yet.
+     */
+    public RacePlayer get(UUID playerId)
+    {
+        return players.get(playerId);
+    }
+
+    /**
+     * Retrieve race name of an online player.
+     *
+     * @param playerId UUID of player.
+     * @return Race name of player or null if not loaded yet.
+     */
+    public String getRace(UUID playerId)
+    {
+        RacePlayer racePlayer = players.get(playerId);
+        return racePlayer != null ? racePlayer.getRace() : null;
+    }
+
+    /**
+     * Check whether the player's race state is in memory.
+     *
+     * @param playerId UUID of player.
+     * @return True if loaded.
+     */
+    public boolean isLoaded(UUID playerId)
+    {
+        return players.containsKey(playerId);
+    }
+
+    /**
+     * Retrieve all loaded players.
+     *
+     * @return Unmodifiable view of all loaded players.
+     */
+    public Collection<RacePlayer> getPlayers()
+    {
+        return Collections.unmodifiableCollection(players.values());
+    }
+
+    /**
+     * Change race state of an online player and record the change in the journal.
+     *
+     * @param playerId UUID of player.
+     * @param change Change to make.
+     * @return True if the player was loaded and changed.
+     */
+    public boolean update(UUID playerId, Consumer<RacePlayer> change)
+    {
+        RacePlayer racePlayer = players.get(playerId);
+        if (racePlayer == null)
+        {
+            return false;
+        }
+
+        change.accept(racePlayer);
+        if (journal != null)
+        {
+            journal.append(playerId.toString(), racePlayer);
+        }
+
+        return true;
+    }
+
+    /**
+     * Start loading race state of a player who is logging in and wait on it for a short time. To be called from the
+     * async pre login thread. The login goes ahead once the timeout passes and the result is handed over on join
+     * whenever it arrives.
+     *
+     * @param playerId UUID of player.
+     * @param username Name of player.
+     */
+    public void prefetch(UUID playerId, String username)
+    {
+        long now = System.nanoTime();
+        staging.values().removeIf((staged) -> staged.isExpired(now));
+        if (saving.containsKey(playerId) || players.containsKey(playerId))
+        {
+            return;
+        }
+
+        CompletableFuture<RacePlayer> future = new CompletableFuture<>();
+        staging.put(playerId, new Staged(future, now + TimeUnit.MILLISECONDS.toNanos(prefetchTtl)));
+        executor.execute(() ->
+        {
+            try
+            {
+                future.complete(fetch(playerId, username));
+            }
+            catch (RuntimeException exception)
+            {
+                future.completeExceptionally(exception);
+            }
+        });
+
+        try
+        {
+            future.get(prefetchTimeout, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException | ExecutionException exception)
+        {
+            //Go ahead with the login. Join picks up the result or loads again.
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Load race state of player asynchronously and pin it while they are online. Race state prefetched during login
+     * is pinned straight away if it already arrived, and loaded again if the prefetch failed.
+     *
+     * @param player Player who joined.
+     * @return Future completed once the player is pinned, or completed exceptionally if their stored race state could
+     * not be read. Nothing is pinned or saved for them then, so they should not go on playing.
+     */
+    public CompletableFuture<RacePlayer> load(Player player)
+    {
+        UUID playerId = player.getUniqueId();
+        String username = player.getName();
+        online.add(playerId);
+
+        //Player rejoined before their last save finished, so the newest copy is still in memory.
+        RacePlayer pending = saving.get(playerId);
+        if (pending != null)
+        {
+            staging.remove(playerId);
+            pin(playerId, username, pending);
+            return CompletableFuture.completedFuture(pending);
+        }
+
+        CompletableFuture<RacePlayer> pinned = new CompletableFuture<>();
+        Staged staged = staging.remove(playerId);
+        if (staged != null && !staged.isExpired(System.nanoTime()))
+        {
+            staged.future.whenComplete((racePlayer, exception) ->
+            {
+                if (exception == null)
+                {
+                    pin(playerId, username, racePlayer);
+                    pinned.complete(racePlayer);
+                }
+                else
+                {
+                    executor.execute(() -> fetchAndPin(playerId, username, pinned));
+                }
+            });
+            return pinned;
+        }
+
+        executor.execute(() -> fetchAndPin(playerId, username, pinned));
+        return pinned;
+    }
+
+    /**
+     * Write race state of player back asynchronously and evict it.
+     *
+     * @param player Player who quit.
+     */
+    public void unload(Player player)
+    {
+        UUID playerId = player.getUniqueId();
+        online.remove(playerId);
+
+        //Anything prefetched for a new session of this player was read before this save.
+        staging.remove(playerId);
+
+        RacePlayer racePlayer = players.remove(playerId);
+        if (racePlayer == null)
+        {
+            return;
+        }
+
+        saving.put(playerId, racePlayer);
+        executor.execute(() ->
+        {
+            try
+            {
+                leased.remove(playerId);
+                repository.join().storeAndRelease(racePlayer);
+            }
+            finally
+            {
+                //A failed save must not leave this copy to be pinned again or saved by every autosave.
+                saving.remove(playerId, racePlayer);
+            }
+        });
+    }
+
+    /**
+     * Write every loaded player synchronously. Players who quit are left to their own save, since writing them here as
+     * well could run at the same time as it.
+     *
+     * @return True if every player was written and no save of a player who quit is still running.
+     */
+    public boolean saveAll()
+    {
+        if (repository.isCompletedExceptionally())
+        {
+            return false;
+        }
+
+        List<RacePlayer> racePlayers = new ArrayList<>(players.values());
+        return repository.join().storeAll(racePlayers).size() == racePlayers.size() && saving.isEmpty();
+    }
+
+    /**
+     * Write every player synchronously and drop the journal records the save made redundant. Changes made while
+     * saving stay in the journal, and so does everything while a player who quit is still being saved or any player
+     * could not be written.
+     */
+    public void checkpoint()
+    {
+        if (journal == null)
+        {
+            saveAll();
+            return;
+        }
+
+        try
+        {
+            long upTo = journal.rotate();
+            if (saveAll())
+            {
+                journal.truncate(upTo);
+            }
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * Reload players another server stored. Called from a background thread, while the copies are swapped on the main
+     * thread. Players still being saved here are left alone, since that save comes after the other server's. Anything
+     * prefetched for the players is dropped so their join reads it again.
+     *
+     * @param playerIds UUIDs of players changed elsewhere.
+     */
+    public void refresh(Collection<UUID> playerIds)
+    {
+        List<UUID> loaded = new ArrayList<>();
+        for (UUID playerId : playerIds)
+        {
+            staging.remove(playerId);
+            if (players.containsKey(playerId) && !saving.containsKey(playerId))
+            {
+                loaded.add(playerId);
+            }
+        }
+
+        if (loaded.isEmpty())
+        {
+            return;
+        }
+
+        List<RacePlayer> racePlayers = repository.join().loadAll(loaded);
+        Bukkit.getScheduler().runTask(plugin, () ->
+        {
+            for (RacePlayer racePlayer : racePlayers)
+            {
+                UUID playerId = racePlayer.getPlayerId();
+                RacePlayer current = players.get(playerId);
+                //The same version as in memory holds nothing newer, while memory may hold unsaved changes.
+                if (current == null || saving.containsKey(playerId) || current.getVersion() == racePlayer.getVersion())
+                {
+                    continue;
+                }
+
+                //The stored copy is the newest, so the journal must not bring back the old one.
+                racePlayer.setUsername(current.getUsername());
+                players.put(playerId, racePlayer);
+                if (journal != null)
+                {
+                    journal.append(playerId.toString(), racePlayer);
+                }
+            }
+        });
+    }
+
+    /**
+     * Renew the leases on online players and try again to lease the others, such as players stored for the first time
+     * or still leased by the server they came from. To be called asynchronously at a fraction of the lease. Players
+     * leased again are reloaded, since the server that held them may have stored them since.
+     */
+    public void heartbeat()
+    {
+        if (!repository.isDone() || !isLeasing())
+        {
+            return;
+        }
+
+        PlayerRepository loaded = repository.join();
+        leased.retainAll(players.keySet());
+        loaded.renew(new ArrayList<>(leased), leaseMillis);
+
+        List<UUID> acquired = new ArrayList<>();
+        for (UUID playerId : players.keySet())
+        {
+            if (!leased.contains(playerId) && loaded.acquire(playerId, leaseMillis))
+            {
+                leased.add(playerId);
+                acquired.add(playerId);
+            }
+        }
+
+        refresh(acquired);
+    }
+
+    /**
+     * Give up every lease this server holds. To be called after the last save when disabling.
+     */
+    public void release()
+    {
+        if (leased.isEmpty() || repository.isCompletedExceptionally())
+        {
+            return;
+        }
+
+        repository.join().release(new ArrayList<>(leased));
+        leased.clear();
+    }
+
+    /**
+     * Read race state of player from the repository, preferring a copy that is still being saved. The player is leased
+     * first, so nobody stores them between the read and the lease. Players who could not be read are never given the
+     * default race, since saving it would replace what is stored.
+     */
+    private RacePlayer fetch(UUID playerId, String username)
+    {
+        if (isLeasing() && repository.join().acquire(playerId, leaseMillis))
+        {
+            leased.add(playerId);
+        }
+
+        RacePlayer racePlayer;
+        try
+        {
+            racePlayer = repository.join().load(playerId);
+        }
+        catch (StorageException exception)
+        {
+            if (!saving.containsKey(playerId))
+            {
+                unlease(playerId);
+                throw exception;
+            }
+
+            racePlayer = null;
+        }
+
+        RacePlayer latest = saving.get(playerId);
+        if (latest != null)
+        {
+            racePlayer = latest;
+        }
+
+        if (racePlayer == null)
+        {
+            racePlayer = new RacePlayer(playerId, username, defaultRace);
+        }
+
+        return racePlayer;
+    }
+
+    /**
+     * Fetch race state of player and pin it, completing the future either way.
+     */
+    private void fetchAndPin(UUID playerId, String username, CompletableFuture<RacePlayer> pinned)
+    {
+        try
+        {
+            RacePlayer racePlayer = fetch(playerId, username);
+            pin(playerId, username, racePlayer);
+            pinned.complete(racePlayer);
+        }
+        catch (RuntimeException exception)
+        {
+            exception.printStackTrace();
+            pinned.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * Leases only matter when other servers store the same players. Waits on the repository if it is still connecting.
+     */
+    private boolean isLeasing()
+    {
+        return leaseMillis > 0 && !repository.isCompletedExceptionally() && repository.join().isShared();
+    }
+
+    /**
+     * Only pin players who are still online once their data arrives. A player who quits while being pinned may find
+     * nothing to save yet, so they are checked again afterwards and unpinned if they left.
+     */
+    private void pin(UUID playerId, String username, RacePlayer racePlayer)
+    {
+        if (!online.contains(playerId))
+        {
+            unlease(playerId);
+            return;
+        }
+
+        racePlayer.setUsername(username);
+        players.put(playerId, racePlayer);
+        if (!online.contains(playerId) && players.remove(playerId, racePlayer))
+        {
+            unlease(playerId);
+        }
+    }
+
+    /**
+     * Give up the lease on a player who is not pinned, so other servers are not kept from storing them.
+     */
+    private void unlease(UUID playerId)
+    {
+        if (leased.remove(playerId))
+        {
+            repository.join().release(Collections.singletonList(playerId));
+        }
+    }
+}
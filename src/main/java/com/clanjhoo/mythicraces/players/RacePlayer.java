@@ -0,0 +1,93 @@
+package com.clanjhoo.mythicraces.players;
+
+import com.github.rfsmassacre.heavenlibrary.codecs.GenerateCodec;
+
+import java.util.UUID;
+
+/**
+ * Race state of a single player.
+ */
+@GenerateCodec
+@SuppressWarnings("unused")
+public class RacePlayer
+{
+    private UUID playerId;
+    private String username;
+    private String race;
+    private int level;
+    //Version of the stored row this state was read at, used to detect saves from other servers.
+    private long version;
+
+    /**
+     * Required for deserialization. Fields missing from stored data keep these defaults.
+     */
+    public RacePlayer()
+    {
+        this.level = 1;
+    }
+
+    /**
+     * Brand new player with the given race.
+     *
+     * @param playerId UUID of player.
+     * @param username Last known name of player.
+     * @param race Name of race.
+     */
+    public RacePlayer(UUID playerId, String username, String race)
+    {
+        this.playerId = playerId;
+        this.username = username;
+        this.race = race;
+        this.level = 1;
+    }
+
+    public UUID getPlayerId()
+    {
+        return playerId;
+    }
+
+    public void setPlayerId(UUID playerId)
+    {
+        this.playerId = playerId;
+    }
+
+    public String getUsername()
+    {
+        return username;
+    }
+
+    public void setUsername(String username)
+    {
+        this.username = username;
+    }
+
+    public String getRace()
+    {
+        return race;
+    }
+
+    public void setRace(String race)
+    {
+        this.race = race;
+    }
+
+    public int getLevel()
+    {
+        return level;
+    }
+
+    public void setLevel(int level)
+    {
+        this.level = level;
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public void setVersion(long version)
+    {
+        this.version = version;
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.rfsmassacre.heavenlibrary.codecs;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.IOException;
+
+/**
+ * Converts one stored class to and from JSON and YAML. Implementations are generated for classes annotated with
+ * GenerateCodec and found through Codecs.
+ *
+ * @param <T> Class type converted.
+ */
+public interface Codec<T>
+{
+    /**
+     * Class converted by this codec.
+     *
+     * @return Class type.
+     */
+    Class<T> getType();
+
+    /**
+     * Write object as a JSON object.
+     *
+     * @param writer Writer to write to.
+     * @param t Object to write, which may be null.
+     * @throws IOException Expected to throw if the writer fails.
+     */
+    void write(JsonWriter writer, T t) throws IOException;
+
+    /**
+     * Read object from a JSON object. Unknown fields are skipped.
+     *
+     * @param reader Reader positioned at the object.
+     * @return Object read, or null if the value was null.
+     * @throws IOException Expected to throw if the reader fails or the JSON does not fit.
+     */
+    T read(JsonReader reader) throws IOException;
+
+    /**
+     * Write object into a YAML section.
+     *
+     * @param t Object to write.
+     * @param section Section to write into.
+     */
+    void save(T t, ConfigurationSection section);
+
+    /**
+     * Read object from a YAML section. Keys missing from the section keep the value a new object starts with.
+     *
+     * @param section Section to read from.
+     * @return Object read.
+     */
+    T load(ConfigurationSection section);
+}
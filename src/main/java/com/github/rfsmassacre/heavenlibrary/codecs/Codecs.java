@@ -0,0 +1,207 @@
+package com.github.rfsmassacre.heavenlibrary.codecs;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.UUID;
+
+/**
+ * Finds the codecs generated at compile time and hands them to Gson.
+ *
+ * Generated codecs are registered as services by the annotation processor, and looked up once through the class
+ * loader of this library. Classes without a codec keep using Gson's reflective conversion.
+ */
+@SuppressWarnings("unused")
+public final class Codecs
+{
+    private static final Map<Class<?>, Codec<?>> CODECS = load();
+
+    /**
+     * Gson type adapter factory serving every generated codec.
+     */
+    public static final TypeAdapterFactory FACTORY = new TypeAdapterFactory()
+    {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type)
+        {
+            Codec<T> codec = (Codec<T>) CODECS.get(type.getRawType());
+            return codec == null ? null : adapter(codec);
+        }
+    };
+
+    private Codecs()
+    {
+        //Do nothing. Utility class.
+    }
+
+    /**
+     * Retrieve the generated codec of a class.
+     *
+     * @param clazz Class type.
+     * @param <T> Class type.
+     * @return Codec or null if none was generated.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Codec<T> get(Class<T> clazz)
+    {
+        return (Codec<T>) CODECS.get(clazz);
+    }
+
+    /**
+     * Retrieve every class with a generated codec.
+     *
+     * @return Unmodifiable map of codecs by class.
+     */
+    public static Map<Class<?>, Codec<?>> getAll()
+    {
+        return CODECS;
+    }
+
+    /**
+     * Start building Gson that uses the generated codecs.
+     *
+     * @return Gson builder with the codecs registered.
+     */
+    public static GsonBuilder builder()
+    {
+        return new GsonBuilder().registerTypeAdapterFactory(FACTORY);
+    }
+
+    /**
+     * Read a string that may be null. Used by generated codecs.
+     *
+     * @param reader Reader positioned at the value.
+     * @return String or null.
+     * @throws IOException Expected to throw if the value is not a string.
+     */
+    public static String nextString(JsonReader reader) throws IOException
+    {
+        if (reader.peek() == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return null;
+        }
+
+        return reader.nextString();
+    }
+
+    /**
+     * Read a UUID that may be null. Used by generated codecs.
+     *
+     * @param reader Reader positioned at the value.
+     * @return UUID or null.
+     * @throws IOException Expected to throw if the value is not a string.
+     */
+    public static UUID nextUUID(JsonReader reader) throws IOException
+    {
+        String value = nextString(reader);
+        return value == null ? null : UUID.fromString(value);
+    }
+
+    /**
+     * Check whether the next value is null and skip it if it is. Used by generated codecs for wrapper types.
+     *
+     * @param reader Reader positioned at the value.
+     * @return True if it was null.
+     * @throws IOException Expected to throw if the reader fails.
+     */
+    public static boolean skipNull(JsonReader reader) throws IOException
+    {
+        if (reader.peek() == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Read an enum constant that may be null. Used by generated codecs.
+     *
+     * @param reader Reader positioned at the value.
+     * @param clazz Class of enum.
+     * @param <E> Class type of enum.
+     * @return Constant, or null if the value is null or names no constant.
+     * @throws IOException Expected to throw if the value is not a string.
+     */
+    public static <E extends Enum<E>> E nextEnum(JsonReader reader, Class<E> clazz) throws IOException
+    {
+        return toEnum(clazz, nextString(reader));
+    }
+
+    /**
+     * Find an enum constant by name. Used by generated codecs.
+     *
+     * @param clazz Class of enum.
+     * @param name Name of constant, which may be null.
+     * @param <E> Class type of enum.
+     * @return Constant, or null if the name is null or names no constant.
+     */
+    public static <E extends Enum<E>> E toEnum(Class<E> clazz, String name)
+    {
+        if (name == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return Enum.valueOf(clazz, name);
+        }
+        catch (IllegalArgumentException exception)
+        {
+            return null;
+        }
+    }
+
+    private static <T> TypeAdapter<T> adapter(Codec<T> codec)
+    {
+        return new TypeAdapter<T>()
+        {
+            @Override
+            public void write(JsonWriter writer, T t) throws IOException
+            {
+                codec.write(writer, t);
+            }
+
+            @Override
+            public T read(JsonReader reader) throws IOException
+            {
+                return codec.read(reader);
+            }
+        };
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Map<Class<?>, Codec<?>> load()
+    {
+        Map<Class<?>, Codec<?>> codecs = new HashMap<>();
+        try
+        {
+            for (Codec codec : ServiceLoader.load(Codec.class, Codecs.class.getClassLoader()))
+            {
+                codecs.put(codec.getType(), codec);
+            }
+        }
+        catch (ServiceConfigurationError exception)
+        {
+            exception.printStackTrace();
+        }
+
+        return Collections.unmodifiableMap(codecs);
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.rfsmassacre.heavenlibrary.codecs;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a codec for a stored class at compile time, so it is converted to and from JSON and YAML without
+ * reflection.
+ *
+ * The class needs a public constructor without parameters, and a getter and setter for every field that is neither
+ * static nor transient. Fields may be strings, UUIDs, enums, primitives or their wrappers. JSON uses the field names
+ * like Gson does, YAML writes them in kebab case, so playerId is stored under player-id.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateCodec
+{
+}
@@ -0,0 +1,533 @@
+package com.github.rfsmassacre.heavenlibrary.codecs.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates a codec for every class annotated with GenerateCodec and registers them as services.
+ *
+ * Each codec is plain code calling the getters and setters of the class one field after another, so nothing is looked
+ * up by reflection at runtime. Only runs at compile time and is never loaded by the server.
+ */
+@SupportedAnnotationTypes(CodecProcessor.ANNOTATION)
+public class CodecProcessor extends AbstractProcessor
+{
+    static final String ANNOTATION = "com.github.rfsmassacre.heavenlibrary.codecs.GenerateCodec";
+    private static final String CODEC = "com.github.rfsmassacre.heavenlibrary.codecs.Codec";
+    private static final String CODECS = "com.github.rfsmassacre.heavenlibrary.codecs.Codecs";
+    private static final String SERVICE = "META-INF/services/" + CODEC;
+
+    /**
+     * How a field is converted.
+     */
+    private enum Kind
+    {
+        STRING, UUID, ENUM, INT, LONG, DOUBLE, FLOAT, BOOLEAN
+    }
+
+    /**
+     * Field of a stored class along with its accessors.
+     */
+    private static final class Field
+    {
+        private final String name;
+        private final String yamlKey;
+        private final Kind kind;
+        private final boolean primitive;
+        private final String type;
+        private final String getter;
+        private final String setter;
+
+        private Field(String name, Kind kind, boolean primitive, String type, String getter, String setter)
+        {
+            this.name = name;
+            this.yamlKey = kebab(name);
+            this.kind = kind;
+            this.primitive = primitive;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    private final Set<String> generated = new TreeSet<>();
+    private Filer filer;
+    private Messager messager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment environment)
+    {
+        super.init(environment);
+        this.filer = environment.getFiler();
+        this.messager = environment.getMessager();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round)
+    {
+        for (TypeElement annotation : annotations)
+        {
+            for (Element element : round.getElementsAnnotatedWith(annotation))
+            {
+                if (element.getKind() != ElementKind.CLASS)
+                {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "Only classes can have a generated codec.", element);
+                    continue;
+                }
+
+                generate((TypeElement) element);
+            }
+        }
+
+        if (round.processingOver() && !generated.isEmpty())
+        {
+            writeServices();
+        }
+
+        return true;
+    }
+
+    private void generate(TypeElement type)
+    {
+        List<Field> fields = fields(type);
+        if (fields == null)
+        {
+            return;
+        }
+
+        String packageName = ((PackageElement) processingEnv.getElementUtils().getPackageOf(type)).getQualifiedName()
+                .toString();
+        String typeName = type.getQualifiedName().toString();
+        String codecName = type.getSimpleName() + "Codec";
+        String qualifiedName = packageName.isEmpty() ? codecName : packageName + "." + codecName;
+        try
+        {
+            JavaFileObject source = filer.createSourceFile(qualifiedName, type);
+            try (PrintWriter out = new PrintWriter(source.openWriter()))
+            {
+                write(out, packageName, typeName, codecName, fields);
+            }
+
+            generated.add(qualifiedName);
+        }
+        catch (IOException exception)
+        {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Could not write " + qualifiedName + ": " +
+                    exception.getMessage(), type);
+        }
+    }
+
+    /**
+     * Collect every stored field of the class with its getter and setter.
+     *
+     * @return Fields in declaration order, or null if the class can not have a codec.
+     */
+    private List<Field> fields(TypeElement type)
+    {
+        boolean constructor = false;
+        for (ExecutableElement element : ElementFilter.constructorsIn(type.getEnclosedElements()))
+        {
+            constructor |= element.getParameters().isEmpty() && element.getModifiers().contains(Modifier.PUBLIC);
+        }
+
+        if (!constructor || !type.getModifiers().contains(Modifier.PUBLIC) ||
+                type.getModifiers().contains(Modifier.ABSTRACT))
+        {
+            messager.printMessage(Diagnostic.Kind.ERROR, "A class with a generated codec must be public, concrete " +
+                    "and have a public constructor without parameters.", type);
+            return null;
+        }
+
+        List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils()
+                .getAllMembers(type));
+        List<Field> fields = new ArrayList<>();
+        boolean valid = true;
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements()))
+        {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT))
+            {
+                continue;
+            }
+
+            String name = field.getSimpleName().toString();
+            TypeMirror mirror = field.asType();
+            Kind kind = kind(mirror);
+            if (kind == null)
+            {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Field type " + mirror + " is not supported by " +
+                        "generated codecs.", field);
+                valid = false;
+                continue;
+            }
+
+            String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            String getter = accessor(methods, mirror.getKind() == TypeKind.BOOLEAN ? "is" + capitalized :
+                    "get" + capitalized, 0);
+            if (getter == null)
+            {
+                getter = accessor(methods, "get" + capitalized, 0);
+            }
+
+            String setter = accessor(methods, "set" + capitalized, 1);
+            if (getter == null || setter == null)
+            {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Field " + name + " needs a public getter and setter " +
+                        "for a generated codec.", field);
+                valid = false;
+                continue;
+            }
+
+            fields.add(new Field(name, kind, mirror.getKind().isPrimitive(), mirror.toString(), getter, setter));
+        }
+
+        return valid ? fields : null;
+    }
+
+    private String accessor(List<ExecutableElement> methods, String name, int parameters)
+    {
+        for (ExecutableElement method : methods)
+        {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == parameters &&
+                    method.getModifiers().contains(Modifier.PUBLIC) && !method.getModifiers().contains(Modifier.STATIC))
+            {
+                return name;
+            }
+        }
+
+        return null;
+    }
+
+    private Kind kind(TypeMirror mirror)
+    {
+        switch (mirror.getKind())
+        {
+            case INT:
+                return Kind.INT;
+            case LONG:
+                return Kind.LONG;
+            case DOUBLE:
+                return Kind.DOUBLE;
+            case FLOAT:
+                return Kind.FLOAT;
+            case BOOLEAN:
+                return Kind.BOOLEAN;
+            case DECLARED:
+                Element element = ((DeclaredType) mirror).asElement();
+                if (element.getKind() == ElementKind.ENUM)
+                {
+                    return Kind.ENUM;
+                }
+
+                switch (((TypeElement) element).getQualifiedName().toString())
+                {
+                    case "java.lang.String":
+                        return Kind.STRING;
+                    case "java.util.UUID":
+                        return Kind.UUID;
+                    case "java.lang.Integer":
+                        return Kind.INT;
+                    case "java.lang.Long":
+                        return Kind.LONG;
+                    case "java.lang.Double":
+                        return Kind.DOUBLE;
+                    case "java.lang.Float":
+                        return Kind.FLOAT;
+                    case "java.lang.Boolean":
+                        return Kind.BOOLEAN;
+                    default:
+                        return null;
+                }
+            default:
+                return null;
+        }
+    }
+
+    private void write(PrintWriter out, String packageName, String typeName, String codecName, List<Field> fields)
+    {
+        if (!packageName.isEmpty())
+        {
+            out.println("package " + packageName + ";");
+            out.println();
+        }
+
+        out.println("/**");
+        out.println(" * Generated by " + CodecProcessor.class.getName() + ". Do not edit.");
+        out.println(" */");
+        out.println("public final class " + codecName + " implements " + CODEC + "<" + typeName + ">");
+        out.println("{");
+        out.println("    @Override");
+        out.println("    public Class<" + typeName + "> getType()");
+        out.println("    {");
+        out.println("        return " + typeName + ".class;");
+        out.println("    }");
+        out.println();
+
+        out.println("    @Override");
+        out.println("    public void write(com.google.gson.stream.JsonWriter writer, " + typeName + " t) " +
+                "throws java.io.IOException");
+        out.println("    {");
+        out.println("        if (t == null)");
+        out.println("        {");
+        out.println("            writer.nullValue();");
+        out.println("            return;");
+        out.println("        }");
+        out.println();
+        out.println("        writer.beginObject();");
+        for (Field field : fields)
+        {
+            out.println("        writer.name(\"" + field.name + "\").value(" + jsonValue(field) + ");");
+        }
+
+        out.println("        writer.endObject();");
+        out.println("    }");
+        out.println();
+
+        out.println("    @Override");
+        out.println("    public " + typeName + " read(com.google.gson.stream.JsonReader reader) " +
+                "throws java.io.IOException");
+        out.println("    {");
+        out.println("        if (" + CODECS + ".skipNull(reader))");
+        out.println("        {");
+        out.println("            return null;");
+        out.println("        }");
+        out.println();
+        out.println("        " + typeName + " t = new " + typeName + "();");
+        out.println("        reader.beginObject();");
+        out.println("        while (reader.hasNext())");
+        out.println("        {");
+        out.println("            switch (reader.nextName())");
+        out.println("            {");
+        for (Field field : fields)
+        {
+            out.println("                case \"" + field.name + "\":");
+            out.println("                    " + jsonRead(field));
+            out.println("                    break;");
+        }
+
+        out.println("                default:");
+        out.println("                    reader.skipValue();");
+        out.println("            }");
+        out.println("        }");
+        out.println();
+        out.println("        reader.endObject();");
+        out.println("        return t;");
+        out.println("    }");
+        out.println();
+
+        out.println("    @Override");
+        out.println("    public void save(" + typeName + " t, org.bukkit.configuration.ConfigurationSection section)");
+        out.println("    {");
+        for (Field field : fields)
+        {
+            out.println("        section.set(\"" + field.yamlKey + "\", " + yamlValue(field) + ");");
+        }
+
+        out.println("    }");
+        out.println();
+
+        out.println("    @Override");
+        out.println("    public " + typeName + " load(org.bukkit.configuration.ConfigurationSection section)");
+        out.println("    {");
+        out.println("        " + typeName + " t = new " + typeName + "();");
+        for (Field field : fields)
+        {
+            out.println("        if (section.contains(\"" + field.yamlKey + "\"))");
+            out.println("        {");
+            out.println("            t." + field.setter + "(" + yamlRead(field) + ");");
+            out.println("        }");
+            out.println();
+        }
+
+        out.println("        return t;");
+        out.println("    }");
+        out.println("}");
+    }
+
+    private static String jsonValue(Field field)
+    {
+        String get = "t." + field.getter + "()";
+        switch (field.kind)
+        {
+            case UUID:
+                return get + " == null ? null : " + get + ".toString()";
+            case ENUM:
+                return get + " == null ? null : " + get + ".name()";
+            default:
+                return get;
+        }
+    }
+
+    private static String jsonRead(Field field)
+    {
+        String set = "t." + field.setter;
+        switch (field.kind)
+        {
+            case STRING:
+                return set + "(" + CODECS + ".nextString(reader));";
+            case UUID:
+                return set + "(" + CODECS + ".nextUUID(reader));";
+            case ENUM:
+                return set + "(" + CODECS + ".nextEnum(reader, " + field.type + ".class));";
+            default:
+                String next = number(field.kind);
+                if (field.primitive)
+                {
+                    return "if (!" + CODECS + ".skipNull(reader)) " + set + "(" + next + ");";
+                }
+
+                return set + "(" + CODECS + ".skipNull(reader) ? null : " + field.type + ".valueOf(" + next + "));";
+        }
+    }
+
+    private static String number(Kind kind)
+    {
+        switch (kind)
+        {
+            case INT:
+                return "reader.nextInt()";
+            case LONG:
+                return "reader.nextLong()";
+            case FLOAT:
+                return "(float) reader.nextDouble()";
+            case BOOLEAN:
+                return "reader.nextBoolean()";
+            default:
+                return "reader.nextDouble()";
+        }
+    }
+
+    private static String yamlValue(Field field)
+    {
+        String get = "t." + field.getter + "()";
+        switch (field.kind)
+        {
+            case UUID:
+                return get + " == null ? null : " + get + ".toString()";
+            case ENUM:
+                return get + " == null ? null : " + get + ".name()";
+            default:
+                return get;
+        }
+    }
+
+    private static String yamlRead(Field field)
+    {
+        String key = "\"" + field.yamlKey + "\"";
+        switch (field.kind)
+        {
+            case STRING:
+                return "section.getString(" + key + ")";
+            case UUID:
+                return "section.getString(" + key + ") == null ? null : java.util.UUID.fromString(section.getString(" +
+                        key + "))";
+            case ENUM:
+                return CODECS + ".toEnum(" + field.type + ".class, section.getString(" + key + "))";
+            case INT:
+                return "section.getInt(" + key + ")";
+            case LONG:
+                return "section.getLong(" + key + ")";
+            case FLOAT:
+                return "(float) section.getDouble(" + key + ")";
+            case BOOLEAN:
+                return "section.getBoolean(" + key + ")";
+            default:
+                return "section.getDouble(" + key + ")";
+        }
+    }
+
+    /**
+     * Register every codec as a service, keeping codecs of classes not compiled this time.
+     */
+    private void writeServices()
+    {
+        Set<String> services = new TreeSet<>(generated);
+        try
+        {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE);
+            try (BufferedReader reader = new BufferedReader(existing.openReader(true)))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    if (!line.trim().isEmpty())
+                    {
+                        services.add(line.trim());
+                    }
+                }
+            }
+        }
+        catch (IOException | IllegalArgumentException exception)
+        {
+            //No services written before.
+        }
+
+        try
+        {
+            FileObject resource = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE);
+            try (Writer writer = resource.openWriter())
+            {
+                for (String service : services)
+                {
+                    writer.write(service + "\n");
+                }
+            }
+        }
+        catch (IOException exception)
+        {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Could not register codecs: " + exception.getMessage());
+        }
+    }
+
+    private static String kebab(String name)
+    {
+        StringBuilder builder = new StringBuilder(name.length() + 4);
+        for (char character : name.toCharArray())
+        {
+            if (Character.isUpperCase(character))
+            {
+                builder.append('-').append(Character.toLowerCase(character));
+            }
+            else
+            {
+                builder.append(character);
+            }
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,220 @@
+package com.github.rfsmassacre.heavenlibrary.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking file and database work off the main thread, with an executor of its own for each storage backend.
+ *
+ * On Java 21 and newer every task gets a virtual thread, and a semaphore caps how many of them work on the backend at
+ * once. Tasks waiting on the semaphore hold no platform thread, so thousands of small reads during a mass join queue
+ * up cheaply instead of being capped by the size of a pool. Older Java versions fall back to a fixed pool of daemon
+ * threads.
+ *
+ * Tasks handed to an executor that was already closed run on the calling thread, so no write is lost while disabling.
+ */
+@SuppressWarnings("unused")
+public class StorageExecutor implements Executor, AutoCloseable
+{
+    public static final int DEFAULT_CONCURRENCY = 64;
+    public static final int DEFAULT_THREADS = 4;
+
+    private static final Map<String, StorageExecutor> EXECUTORS = new ConcurrentHashMap<>();
+    private static final Map<String, int[]> LIMITS = new ConcurrentHashMap<>();
+
+    /**
+     * Set the limits of a backend. Only applies to its executor if it was not created yet.
+     *
+     * @param backend Name of backend, such as json or mysql.
+     * @param concurrency Most tasks working on the backend at once on Java 21 and newer.
+     * @param threads Threads in the pool on older Java versions.
+     */
+    public static void configure(String backend, int concurrency, int threads)
+    {
+        LIMITS.put(backend.toLowerCase(Locale.ROOT), new int[]{concurrency, threads});
+    }
+
+    /**
+     * Retrieve the executor of a backend, creating it if needed.
+     *
+     * @param backend Name of backend, such as json or mysql.
+     * @return Executor shared by everything using the backend.
+     */
+    public static StorageExecutor of(String backend)
+    {
+        return EXECUTORS.computeIfAbsent(backend.toLowerCase(Locale.ROOT), (name) ->
+        {
+            int[] limits = LIMITS.getOrDefault(name, new int[]{DEFAULT_CONCURRENCY, DEFAULT_THREADS});
+            return new StorageExecutor(name, limits[0], limits[1]);
+        });
+    }
+
+    /**
+     * Close every executor, waiting for their tasks to finish. Executors asked for afterwards are created again.
+     *
+     * @param timeoutMillis Milliseconds to wait on each executor.
+     */
+    public static void closeAll(long timeoutMillis)
+    {
+        List<StorageExecutor> executors = new ArrayList<>(EXECUTORS.values());
+        EXECUTORS.clear();
+        for (StorageExecutor executor : executors)
+        {
+            executor.close(timeoutMillis);
+        }
+    }
+
+    private final String backend;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final boolean virtual;
+
+    /**
+     * Constructor.
+     *
+     * @param backend Name of backend, used in thread names.
+     * @param concurrency Most tasks working on the backend at once on Java 21 and newer.
+     * @param threads Threads in the pool on older Java versions.
+     */
+    public StorageExecutor(String backend, int concurrency, int threads)
+    {
+        this.backend = backend;
+        ExecutorService virtualExecutor = VirtualThreads.newExecutor("Storage-" + backend + "-");
+        if (virtualExecutor != null)
+        {
+            this.executor = virtualExecutor;
+            this.permits = new Semaphore(Math.max(1, concurrency), true);
+            this.virtual = true;
+        }
+        else
+        {
+            //The pool size is the limit already, so no semaphore is needed.
+            AtomicInteger count = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, concurrency)), (runnable) ->
+            {
+                Thread thread = new Thread(runnable, "Storage-" + backend + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.permits = null;
+            this.virtual = false;
+        }
+    }
+
+    /**
+     * Run task on a thread of this backend once it is below its limit.
+     *
+     * @param task Task to run.
+     */
+    @Override
+    public void execute(Runnable task)
+    {
+        Runnable guarded = () ->
+        {
+            try
+            {
+                run(task);
+            }
+            catch (RuntimeException exception)
+            {
+                //Nothing else would ever see it.
+                exception.printStackTrace();
+            }
+        };
+
+        try
+        {
+            executor.execute(guarded);
+        }
+        catch (RejectedExecutionException exception)
+        {
+            guarded.run();
+        }
+    }
+
+    /**
+     * Retrieve name of backend.
+     *
+     * @return Name of backend.
+     */
+    public String getBackend()
+    {
+        return backend;
+    }
+
+    /**
+     * Check whether tasks run on virtual threads.
+     *
+     * @return True on Java 21 and newer.
+     */
+    public boolean isVirtual()
+    {
+        return virtual;
+    }
+
+    /**
+     * Retrieve amount of tasks waiting on the limit. Only known when running on virtual threads.
+     *
+     * @return Waiting tasks.
+     */
+    public int getWaiting()
+    {
+        return permits == null ? 0 : permits.getQueueLength();
+    }
+
+    /**
+     * Stop taking tasks and wait up to five seconds for the running ones.
+     */
+    @Override
+    public void close()
+    {
+        close(5000L);
+    }
+
+    /**
+     * Stop taking tasks and wait for the running ones.
+     *
+     * @param timeoutMillis Milliseconds to wait.
+     */
+    public void close(long timeoutMillis)
+    {
+        executor.shutdown();
+        try
+        {
+            executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(Runnable task)
+    {
+        if (permits == null)
+        {
+            task.run();
+            return;
+        }
+
+        permits.acquireUninterruptibly();
+        try
+        {
+            task.run();
+        }
+        finally
+        {
+            permits.release();
+        }
+    }
+}
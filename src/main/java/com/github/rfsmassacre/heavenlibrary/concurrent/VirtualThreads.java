@@ -0,0 +1,42 @@
+package com.github.rfsmassacre.heavenlibrary.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads, which only exist on Java 21 and newer. They are looked up at runtime so the same class
+ * works on Java 8. Plugin class loaders do not read the versioned classes of a multi release jar, so those can not be
+ * used instead.
+ */
+final class VirtualThreads
+{
+    private VirtualThreads()
+    {
+        //Do nothing. Only holds static methods.
+    }
+
+    /**
+     * Create an executor starting a virtual thread for every task.
+     *
+     * @param prefix Prefix of thread names.
+     * @return Executor, or null if virtual threads are not available.
+     */
+    static ExecutorService newExecutor(String prefix)
+    {
+        try
+        {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        }
+        catch (ReflectiveOperationException | RuntimeException exception)
+        {
+            //Older Java, or a preview build with virtual threads turned off.
+            return null;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.github.rfsmassacre.heavenlibrary.databases;
+
+import com.github.rfsmassacre.heavenlibrary.metrics.OperationTimer;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tells every server sharing a database which rows the others changed, so they can drop or reload what they keep in
+ * memory.
+ *
+ * Each write appends the key of the changed row to a change log table, tagged with the server that made it. Every
+ * server polls the log from the last id it saw in a single query, however many rows it keeps in memory, and hands the
+ * keys changed by other servers to a listener.
+ *
+ * Auto increment ids are handed out before the insert commits, so a slow transaction can commit an id lower than one
+ * already read. Ids skipped this way are kept as gaps and looked up again until they show up or are too old to still
+ * be waiting on a commit. Old entries are pruned by whichever server gets to them first.
+ */
+@SuppressWarnings("unused")
+public class ChangeFeed implements AutoCloseable
+{
+    private static final long GAP_TIMEOUT_MILLIS = 30000L;
+    private static final int MAX_GAPS = 1024;
+    private static final int GAP_BATCH = 100;
+
+    private final SQLDatabase<?> database;
+    private final String tableName;
+    private final String nodeId;
+    private final String insert;
+    private final String selectAfter;
+    private final String selectMax;
+    private final String prune;
+
+    //Only touched by the polling thread once started.
+    private final Map<Long, Long> gaps;
+    private long lastId;
+    private long lastPrune;
+    private ScheduledExecutorService poller;
+
+    /**
+     * Constructor creating the change log table if it does not exist yet.
+     *
+     * @param database Database shared between the servers.
+     * @param tableName Name of change log table.
+     */
+    public ChangeFeed(SQLDatabase<?> database, String tableName)
+    {
+        this.database = database;
+        this.tableName = tableName;
+        this.nodeId = UUID.randomUUID().toString();
+        this.insert = "INSERT INTO " + tableName + " (entity_key, node_id, changed_at) VALUES (?, ?, ?)";
+        this.selectAfter = "SELECT change_id, entity_key, node_id FROM " + tableName + " WHERE change_id > ? " +
+                "ORDER BY change_id LIMIT ?";
+        this.selectMax = "SELECT MAX(change_id) FROM " + tableName;
+        this.prune = "DELETE FROM " + tableName + " WHERE changed_at < ?";
+        this.gaps = new LinkedHashMap<>();
+
+        database.applySchema(new Schema(tableName,
+                "change_id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY",
+                "entity_key VARCHAR(64) NOT NULL",
+                "node_id VARCHAR(36) NOT NULL",
+                "changed_at BIGINT NOT NULL")
+                .index(tableName + "_changed_at", "changed_at"));
+    }
+
+    /**
+     * Retrieve the id this server tags its changes with. Changes with this id are never handed to its own listener.
+     *
+     * @return Random id picked when the feed was created.
+     */
+    public String getNodeId()
+    {
+        return nodeId;
+    }
+
+    /**
+     * Tell the other servers that rows changed. To be called after the rows were written.
+     *
+     * @param keys Keys of changed rows.
+     */
+    public void record(Collection<String> keys)
+    {
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>(keys.size());
+        for (String key : keys)
+        {
+            rows.add(new Object[]{key, nodeId, now});
+        }
+
+        database.executeBatch(insert, rows);
+    }
+
+    /**
+     * Tell the other servers that a row changed. To be called after the row was written.
+     *
+     * @param key Key of changed row.
+     */
+    public void record(String key)
+    {
+        database.execute(insert, key, nodeId, System.currentTimeMillis());
+    }
+
+    /**
+     * Start polling on a background thread. Only changes made after this are handed to the listener.
+     *
+     * @param pollMillis Milliseconds between polls.
+     * @param batchSize Most changes read at once.
+     * @param retentionMillis Milliseconds changes are kept in the log. Must be far longer than the poll interval.
+     * @param listener Called from the polling thread with the keys other servers changed since the last poll.
+     */
+    public synchronized void start(long pollMillis, int batchSize, long retentionMillis,
+                                   Consumer<Set<String>> listener)
+    {
+        if (poller != null)
+        {
+            return;
+        }
+
+        this.lastId = readMax();
+        this.poller = Executors.newSingleThreadScheduledExecutor((runnable) ->
+        {
+            Thread thread = new Thread(runnable, "ChangeFeed-" + tableName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(() ->
+        {
+            try
+            {
+                prune(retentionMillis);
+                Set<String> changed = poll(batchSize);
+                if (!changed.isEmpty())
+                {
+                    listener.accept(changed);
+                }
+            }
+            catch (RuntimeException exception)
+            {
+                //Never let one failure stop the polling.
+                exception.printStackTrace();
+            }
+        }, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Read every change made by other servers since the last poll. Called by the polling thread once started.
+     *
+     * @param batchSize Most changes read at once.
+     * @return Keys changed by other servers, in the order they were first changed.
+     */
+    public Set<String> poll(int batchSize)
+    {
+        Set<String> changed = new LinkedHashSet<>();
+        OperationTimer timer = database.startTimer(selectAfter, "poll");
+        try
+        {
+            List<Object[]> rows;
+            do
+            {
+                rows = read(selectAfter, lastId, batchSize);
+                for (Object[] row : rows)
+                {
+                    long id = (Long) row[0];
+                    skipTo(id);
+                    take(row, changed);
+                }
+            }
+            while (rows.size() >= batchSize);
+
+            if (!gaps.isEmpty())
+            {
+                fillGaps(changed);
+            }
+        }
+        catch (SQLException exception)
+        {
+            timer.fail();
+            exception.printStackTrace();
+        }
+        finally
+        {
+            timer.stop();
+        }
+
+        return changed;
+    }
+
+    /**
+     * Stop polling.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (poller != null)
+        {
+            poller.shutdownNow();
+            this.poller = null;
+        }
+    }
+
+    /**
+     * Retrieve amount of ids still waited on.
+     *
+     * @return Gaps in the ids read so far.
+     */
+    public int getGaps()
+    {
+        return gaps.size();
+    }
+
+    /**
+     * Move past an id, remembering any skipped ids as gaps.
+     */
+    private void skipTo(long id)
+    {
+        long deadline = System.currentTimeMillis() + GAP_TIMEOUT_MILLIS;
+        //A huge jump is more likely a restarted sequence or rolled back batch than slow transactions.
+        if (id - lastId - 1 <= MAX_GAPS)
+        {
+            for (long missing = lastId + 1; missing < id; missing++)
+            {
+                gaps.put(missing, deadline);
+            }
+        }
+
+        while (gaps.size() > MAX_GAPS)
+        {
+            Iterator<Long> oldest = gaps.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+
+        this.lastId = Math.max(lastId, id);
+    }
+
+    /**
+     * Look up ids that were skipped, dropping those waited on for too long.
+     */
+    private void fillGaps(Set<String> changed) throws SQLException
+    {
+        long now = System.currentTimeMillis();
+        gaps.values().removeIf((deadline) -> deadline < now);
+        List<Long> missing = new ArrayList<>(gaps.keySet());
+        for (int start = 0; start < missing.size(); start += GAP_BATCH)
+        {
+            List<Long> ids = missing.subList(start, Math.min(missing.size(), start + GAP_BATCH));
+            String sql = "SELECT change_id, entity_key, node_id FROM " + tableName + " WHERE change_id IN (" +
+                    SQLDatabase.placeholders(ids.size()) + ") ORDER BY change_id";
+            for (Object[] row : read(sql, ids.toArray()))
+            {
+                gaps.remove((Long) row[0]);
+                take(row, changed);
+            }
+        }
+    }
+
+    private void take(Object[] row, Set<String> changed)
+    {
+        if (!nodeId.equals(row[2]))
+        {
+            changed.add((String) row[1]);
+        }
+    }
+
+    private List<Object[]> read(String sql, Object... parameters) throws SQLException
+    {
+        return database.read((connection) ->
+        {
+            List<Object[]> rows = new ArrayList<>();
+            PreparedStatement statement = connection.prepareStatement(sql);
+            database.bind(statement, parameters);
+            ResultSet result = statement.executeQuery();
+            while (result.next())
+            {
+                rows.add(new Object[]{result.getLong(1), result.getString(2), result.getString(3)});
+            }
+
+            result.close();
+            statement.close();
+            return rows;
+        });
+    }
+
+    private long readMax()
+    {
+        OperationTimer timer = database.startTimer(selectMax, "query");
+        try
+        {
+            return database.read((connection) ->
+            {
+                PreparedStatement statement = connection.prepareStatement(selectMax);
+                ResultSet result = statement.executeQuery();
+                long max = result.next() ? result.getLong(1) : 0L;
+                result.close();
+                statement.close();
+                return max;
+            });
+        }
+        catch (SQLException exception)
+        {
+            timer.fail();
+            exception.printStackTrace();
+            return 0L;
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Delete changes older than the retention, at most once every tenth of it.
+     */
+    private void prune(long retentionMillis)
+    {
+        long now = System.currentTimeMillis();
+        if (now - lastPrune < retentionMillis / 10)
+        {
+            return;
+        }
+
+        this.lastPrune = now;
+        database.execute(prune, now - retentionMillis);
+    }
+}
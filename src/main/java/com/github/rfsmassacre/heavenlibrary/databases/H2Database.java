@@ -1,14 +1,25 @@
 package com.github.rfsmassacre.heavenlibrary.databases;
 
+import org.h2.tools.Server;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.util.Arrays;
+import java.sql.Statement;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handle H2 databases.
  *
+ * Besides a plain file database, H2 can run fully in memory with its contents periodically written to a compressed
+ * snapshot on disk and restored from it on connect. Either mode can also be opened to outside inspection tools.
+ *
  * @param <T> Object type to store or query.
  */
 @SuppressWarnings("unused")
@@ -29,8 +40,15 @@ public abstract class H2Database<T> extends SQLDatabase<T>
     //Database information.
     private final String absolutePath;
     private final String database;
-    protected String mainKey;
-    protected List<String> columns; //This is assumed they are properly formatted.
+
+    //Tuning information.
+    private final int cacheSize;
+    private final int lockTimeout;
+    private final boolean inMemory;
+    private final long snapshotSeconds;
+    private final int serverPort;
+    private ScheduledExecutorService snapshots;
+    private Server server;
 
     /**
      * Save database while instantiating.
@@ -40,10 +58,34 @@ public abstract class H2Database<T> extends SQLDatabase<T>
      */
     public H2Database(String absolutePath, String database, String mainKey, String... columns)
     {
+        this(absolutePath, database, 0, 0, false, 0, 0, mainKey, columns);
+    }
+
+    /**
+     * Save database while instantiating with tuning.
+     *
+     * H2 always uses multi version concurrency, so readers never block on writers and only conflicting writes wait up
+     * to the lock timeout.
+     *
+     * @param absolutePath Path for databases file location.
+     * @param database Name of database.
+     * @param cacheSize Page cache in KiB, or 0 for the H2 default.
+     * @param lockTimeout Milliseconds a write waits on a locked row, or 0 for the H2 default.
+     * @param inMemory Keep the whole database in memory instead of a file.
+     * @param snapshotSeconds Seconds between snapshots of an in memory database, or 0 to only snapshot on close.
+     * @param serverPort Port to let inspection tools connect on, or 0 to keep the database embedded only.
+     */
+    public H2Database(String absolutePath, String database, int cacheSize, int lockTimeout, boolean inMemory,
+                      long snapshotSeconds, int serverPort, String mainKey, String... columns)
+    {
+        super(mainKey, columns);
         this.absolutePath = absolutePath;
         this.database = database;
-        this.mainKey = mainKey;
-        this.columns = Arrays.asList(columns);
+        this.cacheSize = cacheSize;
+        this.lockTimeout = lockTimeout;
+        this.inMemory = inMemory;
+        this.snapshotSeconds = snapshotSeconds;
+        this.serverPort = serverPort;
 
         try
         {
@@ -65,7 +107,163 @@ public abstract class H2Database<T> extends SQLDatabase<T>
     public void connect() throws SQLException, ClassNotFoundException
     {
         String path = absolutePath.isEmpty() ? "" : absolutePath + File.separator;
+        StringBuilder url = new StringBuilder("jdbc:h2:");
+        if (inMemory)
+        {
+            //Keep the database alive for as long as the JVM rather than the last open connection.
+            url.append("mem:").append(database).append(";DB_CLOSE_DELAY=-1");
+        }
+        else
+        {
+            url.append(path).append(database);
+            if (serverPort > 0)
+            {
+                url.append(";AUTO_SERVER=TRUE;AUTO_SERVER_PORT=").append(serverPort);
+            }
+        }
+
+        if (cacheSize > 0)
+        {
+            url.append(";CACHE_SIZE=").append(cacheSize);
+        }
+
+        if (lockTimeout > 0)
+        {
+            url.append(";LOCK_TIMEOUT=").append(lockTimeout);
+        }
+
+        this.connection = DriverManager.getConnection(url.toString());
+        if (!inMemory)
+        {
+            return;
+        }
+
+        File snapshot = getSnapshotFile();
+        if (snapshot.exists())
+        {
+            execute(connection.createStatement(), "RUNSCRIPT FROM " + quote(snapshot) + " COMPRESSION GZIP");
+        }
+
+        if (snapshotSeconds > 0)
+        {
+            this.snapshots = Executors.newSingleThreadScheduledExecutor((runnable) ->
+            {
+                Thread thread = new Thread(runnable, "H2-Snapshot-" + database);
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshots.scheduleWithFixedDelay(this::snapshot, snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+        }
+
+        if (serverPort > 0)
+        {
+            this.server = Server.createTcpServer("-tcpPort", Integer.toString(serverPort), "-ifExists").start();
+        }
+    }
+
+    /**
+     * Disconnect from database, taking a last snapshot first if it only lives in memory.
+     *
+     * @throws SQLException Expected to throw if host is no longer up.
+     */
+    @Override
+    public void close() throws SQLException
+    {
+        if (snapshots != null)
+        {
+            snapshots.shutdownNow();
+        }
+
+        if (inMemory && connection != null && !connection.isClosed())
+        {
+            snapshot();
+            execute(connection.createStatement(), "SHUTDOWN");
+        }
+
+        if (server != null)
+        {
+            server.stop();
+        }
+
+        super.close();
+    }
+
+    /**
+     * Write the whole in memory database to its snapshot file. The previous snapshot is only replaced once the new one
+     * is complete.
+     */
+    public void snapshot()
+    {
+        if (!inMemory)
+        {
+            return;
+        }
+
+        File snapshot = getSnapshotFile();
+        File temporary = new File(snapshot.getPath() + ".tmp");
+        try
+        {
+            write((connection) ->
+            {
+                execute(connection.createStatement(), "SCRIPT TO " + quote(temporary) + " COMPRESSION GZIP");
+                return null;
+            });
+
+            Files.move(temporary.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (SQLException | IOException exception)
+        {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * Copy the database with its online backup command, or script it out if it only lives in memory.
+     *
+     * @param target Folder to snapshot into. Created if needed.
+     * @throws IOException Expected to throw if the copy could not be made.
+     */
+    @Override
+    public void snapshot(File target) throws IOException
+    {
+        if (inMemory)
+        {
+            snapshot(target, false, "SCRIPT TO " + quote(new File(target, database + ".sql.gz")) +
+                    " COMPRESSION GZIP");
+        }
+        else
+        {
+            snapshot(target, false, "BACKUP TO " + quote(new File(target, database + ".zip")));
+        }
+    }
+
+    @Override
+    protected String upsert(String tableName, String mainKey, List<String> columnNames)
+    {
+        return "MERGE INTO " + tableName + " (" + String.join(", ", columnNames) + ") KEY (" + mainKey +
+                ") VALUES (" + placeholders(columnNames.size()) + ")";
+    }
+
+    /**
+     * Retrieve file the in memory database is snapshot to.
+     *
+     * @return Snapshot file.
+     */
+    public File getSnapshotFile()
+    {
+        String path = absolutePath.isEmpty() ? "" : absolutePath + File.separator;
+        return new File(path + database + ".snapshot.sql.gz");
+    }
 
-        this.connection = DriverManager.getConnection("jdbc:h2:" + path + database);
+    public boolean isInMemory()
+    {
+        return inMemory;
+    }
+
+    private static void execute(Statement statement, String sql) throws SQLException
+    {
+        statement.execute(sql);
+        statement.close();
     }
 }
@@ -1,11 +1,28 @@
 package com.github.rfsmassacre.heavenlibrary.databases;
 
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Handle MySQL databases.
  *
+ * Connections are checked and re-established with exponential backoff when they drop. Reads are retried on a new
+ * connection, while writes that can not reach the database are optionally kept in a local spool file and replayed in
+ * order by a background health check once it is reachable again.
+ *
  * @param <T> Object type to store or query.
  */
 @SuppressWarnings("unused")
@@ -23,6 +40,13 @@ public abstract class MySQLDatabase<T> extends SQLDatabase<T>
         }
     }
 
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final int MAX_RECONNECTS = 5;
+    private static final long INITIAL_BACKOFF_MILLIS = 250L;
+    private static final long MAX_BACKOFF_MILLIS = 4000L;
+    private static final int MAX_READ_ATTEMPTS = 3;
+
     //Database information.
     private final String hostname;
     private final String database;
@@ -31,6 +55,13 @@ public abstract class MySQLDatabase<T> extends SQLDatabase<T>
     private final int port;
     private final boolean ssl;
 
+    //Recovery information.
+    private final WriteSpool spool;
+    private ScheduledExecutorService healthCheck;
+    private volatile boolean suspect;
+    //Guards checking and replacing the connection. Never held while waiting between reconnects.
+    private final ReentrantLock connectionLock = new ReentrantLock();
+
     /**
      * Save database while instantiating.
      *
@@ -43,12 +74,34 @@ public abstract class MySQLDatabase<T> extends SQLDatabase<T>
      */
     public MySQLDatabase(String hostName, String database, String username, String password, int port, boolean ssl)
     {
+        this(hostName, database, username, password, port, ssl, null, 0, null);
+    }
+
+    /**
+     * Save database while instantiating, spooling writes that fail while the database is unreachable.
+     *
+     * @param hostName Address where database is hosted.
+     * @param database Name of database.
+     * @param username Username to access database.
+     * @param password Password to access database.
+     * @param port Port number of database.
+     * @param ssl Use a secured connection.
+     * @param spoolFile File failed writes are kept in until replayed, or null to drop them.
+     * @param healthCheckSeconds Seconds between connection checks, or 0 to only check when a statement fails.
+     * @param mainKey Column that identifies each row.
+     * @param columns Column definitions of the table.
+     */
+    public MySQLDatabase(String hostName, String database, String username, String password, int port, boolean ssl,
+                         File spoolFile, int healthCheckSeconds, String mainKey, String... columns)
+    {
+        super(mainKey, columns);
         this.hostname = hostName;
         this.database = database;
         this.username = username;
         this.password = password;
         this.port = port;
         this.ssl = ssl;
+        this.spool = spoolFile == null ? null : new WriteSpool(spoolFile);
 
         try
         {
@@ -58,6 +111,18 @@ public abstract class MySQLDatabase<T> extends SQLDatabase<T>
         {
             exception.printStackTrace();
         }
+
+        if (healthCheckSeconds > 0)
+        {
+            this.healthCheck = Executors.newSingleThreadScheduledExecutor((runnable) ->
+            {
+                Thread thread = new Thread(runnable, "MySQL-Health-" + database);
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthCheck.scheduleWithFixedDelay(this::checkHealth, healthCheckSeconds, healthCheckSeconds,
+                    TimeUnit.SECONDS);
+        }
     }
 
     /**
@@ -70,6 +135,387 @@ public abstract class MySQLDatabase<T> extends SQLDatabase<T>
     public void connect() throws SQLException, ClassNotFoundException
     {
         this.connection = DriverManager.getConnection("jdbc:mysql://" + hostname + ":" + port + "/" + database +
-                "?autoReconnect=true&useSSL=" + Boolean.toString(ssl).toLowerCase(), username, password);
+                "?useSSL=" + Boolean.toString(ssl).toLowerCase() + "&connectTimeout=" + CONNECT_TIMEOUT_MILLIS,
+                username, password);
+    }
+
+    /**
+     * Disconnect from database, replaying spooled writes one last time if it is reachable.
+     *
+     * @throws SQLException Expected to throw if host is no longer up.
+     */
+    @Override
+    public void close() throws SQLException
+    {
+        if (healthCheck != null)
+        {
+            healthCheck.shutdownNow();
+        }
+
+        if (spool != null && !spool.isEmpty())
+        {
+            try
+            {
+                replay();
+            }
+            catch (SQLException exception)
+            {
+                //Still unreachable. The spool is replayed on the next start.
+            }
+        }
+
+        super.close();
+    }
+
+    /**
+     * Build upsert that updates every column but the key when the key already exists.
+     */
+    @Override
+    protected String upsert(String tableName, String mainKey, List<String> columnNames)
+    {
+        List<String> updates = new ArrayList<>(columnNames.size());
+        for (String column : columnNames)
+        {
+            if (!column.equalsIgnoreCase(mainKey))
+            {
+                updates.add(column + " = VALUES(" + column + ")");
+            }
+        }
+
+        return "INSERT INTO " + tableName + " (" + String.join(", ", columnNames) + ") VALUES (" +
+                placeholders(columnNames.size()) + ") ON DUPLICATE KEY UPDATE " + String.join(", ", updates);
+    }
+
+    /**
+     * Build insert that does nothing when the key already exists. Older MySQL versions need a table to select from.
+     */
+    @Override
+    protected String insertIfAbsent(String tableName, String mainKey, List<String> columnNames)
+    {
+        return "INSERT INTO " + tableName + " (" + String.join(", ", columnNames) + ") SELECT " +
+                placeholders(columnNames.size()) + " FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM " + tableName +
+                " WHERE " + mainKey + " = ?)";
+    }
+
+    /**
+     * Run reading work, retrying on a new connection if the current one dropped.
+     *
+     * @param work Work to run.
+     * @param <R> Type of result.
+     * @return Result of work.
+     * @throws SQLException Thrown by the work or if the database could not be reached.
+     */
+    @Override
+    protected <R> R read(SQLWork<R> work) throws SQLException
+    {
+        for (int attempt = 1; ; attempt++)
+        {
+            Connection current = current();
+            try
+            {
+                return work.run(current);
+            }
+            catch (SQLException exception)
+            {
+                if (attempt >= MAX_READ_ATTEMPTS || !isConnectionError(exception))
+                {
+                    throw exception;
+                }
+
+                reconnect(current);
+            }
+        }
+    }
+
+    /**
+     * Run writing work. While older writes are still spooled, new ones are refused so they get spooled behind them
+     * and replayed in order.
+     *
+     * @param work Work to run.
+     * @param <R> Type of result.
+     * @return Result of work.
+     * @throws SQLException Thrown by the work or if the database could not be reached.
+     */
+    @Override
+    protected <R> R write(SQLWork<R> work) throws SQLException
+    {
+        if (spool != null && !spool.isEmpty())
+        {
+            if (healthCheck == null)
+            {
+                replay();
+            }
+
+            if (!spool.isEmpty())
+            {
+                throw new SQLTransientConnectionException("Waiting on " + spool.size() + " spooled writes to " +
+                        "replay.");
+            }
+        }
+
+        writeLock.lock();
+        try
+        {
+            return work.run(current());
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Spool writes that failed because the database could not be reached.
+     *
+     * @param sql SQL statement with a ? placeholder for each parameter.
+     * @param rows Values that were bound to the placeholders for each row.
+     * @param exception Reason the write failed.
+     */
+    @Override
+    protected void failed(String sql, List<Object[]> rows, SQLException exception)
+    {
+        if (spool == null || !isConnectionError(exception))
+        {
+            exception.printStackTrace();
+            return;
+        }
+
+        try
+        {
+            spool.append(sql, rows);
+        }
+        catch (IOException spoolException)
+        {
+            exception.printStackTrace();
+            spoolException.printStackTrace();
+        }
+    }
+
+    /**
+     * Replay spooled writes in order, each in its own transaction. Writes that fail for any reason other than the
+     * database being unreachable are dropped so they can not block the rest.
+     *
+     * @throws SQLException Expected to throw if the database can not be reached.
+     */
+    public void replay() throws SQLException
+    {
+        if (spool == null)
+        {
+            return;
+        }
+
+        //No other write may run on the connection while it switches to a transaction per entry.
+        writeLock.lock();
+        try
+        {
+            int replayed = 0;
+            try
+            {
+                for (WriteSpool.Entry entry : spool.read())
+                {
+                    try
+                    {
+                        replay(current(), entry);
+                    }
+                    catch (SQLException exception)
+                    {
+                        if (isConnectionError(exception))
+                        {
+                            throw exception;
+                        }
+
+                        exception.printStackTrace();
+                    }
+
+                    replayed++;
+                }
+            }
+            finally
+            {
+                if (replayed > 0)
+                {
+                    try
+                    {
+                        spool.remove(replayed);
+                    }
+                    catch (IOException exception)
+                    {
+                        exception.printStackTrace();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Retrieve amount of writes waiting to be replayed.
+     *
+     * @return Spooled writes.
+     */
+    public int getSpooled()
+    {
+        return spool == null ? 0 : spool.size();
+    }
+
+    private void replay(Connection current, WriteSpool.Entry entry) throws SQLException
+    {
+        boolean autoCommit = current.getAutoCommit();
+        current.setAutoCommit(false);
+        PreparedStatement statement = current.prepareStatement(entry.sql);
+        try
+        {
+            for (Object[] row : entry.rows)
+            {
+                bind(statement, row);
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+            current.commit();
+        }
+        catch (SQLException exception)
+        {
+            current.rollback();
+            throw exception;
+        }
+        finally
+        {
+            statement.close();
+            current.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void checkHealth()
+    {
+        try
+        {
+            //Checks the connection before handing it out.
+            suspect = true;
+            current();
+            replay();
+        }
+        catch (SQLException exception)
+        {
+            //Still unreachable. Try again on the next check.
+        }
+    }
+
+    /**
+     * Retrieve a connection that is open, checking it first if a statement on it failed.
+     *
+     * @return Open connection.
+     * @throws SQLException Expected to throw if the database can not be reached.
+     */
+    private Connection current() throws SQLException
+    {
+        Connection current;
+        connectionLock.lock();
+        try
+        {
+            current = connection;
+            if (current != null && !current.isClosed() && (!suspect || current.isValid(VALIDATION_TIMEOUT_SECONDS)))
+            {
+                suspect = false;
+                return current;
+            }
+        }
+        finally
+        {
+            connectionLock.unlock();
+        }
+
+        return reconnect(current);
+    }
+
+    /**
+     * Replace a dropped connection, waiting twice as long after each failed attempt. The lock is only held while
+     * connecting, so threads waiting on the backoff never hold up others. Nothing happens if another thread already
+     * replaced it.
+     *
+     * @param dropped Connection that dropped.
+     * @return Connection that replaced it.
+     * @throws SQLException Expected to throw if every attempt failed.
+     */
+    private Connection reconnect(Connection dropped) throws SQLException
+    {
+        SQLException last = null;
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 0; attempt < MAX_RECONNECTS; attempt++)
+        {
+            if (attempt > 0)
+            {
+                try
+                {
+                    Thread.sleep(backoff);
+                }
+                catch (InterruptedException exception)
+                {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+
+            connectionLock.lock();
+            try
+            {
+                if (connection != dropped)
+                {
+                    return connection;
+                }
+
+                try
+                {
+                    if (dropped != null)
+                    {
+                        dropped.close();
+                    }
+                }
+                catch (SQLException exception)
+                {
+                    //Already gone.
+                }
+
+                try
+                {
+                    connect();
+                    suspect = false;
+                    return connection;
+                }
+                catch (SQLException exception)
+                {
+                    last = exception;
+                }
+                catch (ClassNotFoundException exception)
+                {
+                    throw new SQLException(exception);
+                }
+            }
+            finally
+            {
+                connectionLock.unlock();
+            }
+        }
+
+        throw last != null ? last : new SQLTransientConnectionException("Interrupted while reconnecting.");
+    }
+
+    private boolean isConnectionError(SQLException exception)
+    {
+        boolean connectionError = exception instanceof SQLTransientConnectionException ||
+                exception instanceof SQLNonTransientConnectionException ||
+                exception instanceof SQLRecoverableException ||
+                (exception.getSQLState() != null && exception.getSQLState().startsWith("08"));
+        if (connectionError)
+        {
+            suspect = true;
+        }
+
+        return connectionError;
     }
 }
@@ -1,11 +1,21 @@
 package com.github.rfsmassacre.heavenlibrary.databases;
 
 import com.github.rfsmassacre.heavenlibrary.interfaces.SQLData;
+import com.github.rfsmassacre.heavenlibrary.metrics.OperationTimer;
+import com.github.rfsmassacre.heavenlibrary.metrics.StorageMetrics;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Define common functions used in all SQL databases.
@@ -14,7 +24,51 @@ import java.util.List;
  */
 abstract class SQLDatabase<T> implements SQLData<T>
 {
+    private static final Pattern TABLE_PATTERN = Pattern.compile("(?i)\\b(?:FROM|INTO|UPDATE|TABLE(?:\\s+IF" +
+            "\\s+NOT\\s+EXISTS)?|ON)\\s+[`\"]?(\\w+)");
+    private static final int MAX_CACHED_TABLES = 1024;
+
+    private static final List<String> CONSTRAINTS = Arrays.asList("PRIMARY", "UNIQUE", "FOREIGN", "CONSTRAINT",
+            "CHECK", "KEY", "INDEX");
+
+    private final Map<String, String> tables = new ConcurrentHashMap<>();
+    private final Map<String, String> upserts = new ConcurrentHashMap<>();
+    //Held for every unit of work that writes on the shared connection, including any transaction it opens.
+    protected final ReentrantLock writeLock = new ReentrantLock();
     protected Connection connection;
+    protected String mainKey;
+    protected List<String> columns; //This is assumed they are properly formatted.
+
+    /**
+     * Constructor for databases without key information. Upserts are not available.
+     */
+    protected SQLDatabase()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param mainKey Column that identifies each row, or null if there is none.
+     * @param columns Column definitions of the table in the order values are given.
+     */
+    protected SQLDatabase(String mainKey, String... columns)
+    {
+        this.mainKey = mainKey;
+        this.columns = Arrays.asList(columns);
+    }
+
+    /**
+     * Work done with a connection.
+     *
+     * @param <R> Type of result.
+     */
+    @FunctionalInterface
+    protected interface SQLWork<R>
+    {
+        R run(Connection connection) throws SQLException;
+    }
 
     /**
      * Disconnect from database.
@@ -40,12 +94,29 @@ abstract class SQLDatabase<T> implements SQLData<T>
     {
         try
         {
-            Statement statement = connection.createStatement();
-            for (String sql : sqls)
+            write((connection) ->
             {
-                statement.executeUpdate(sql);
-            }
-            statement.close();
+                Statement statement = connection.createStatement();
+                for (String sql : sqls)
+                {
+                    OperationTimer timer = startTimer(sql, "update");
+                    try
+                    {
+                        statement.executeUpdate(sql);
+                    }
+                    catch (SQLException exception)
+                    {
+                        timer.fail();
+                        throw exception;
+                    }
+                    finally
+                    {
+                        timer.stop();
+                    }
+                }
+                statement.close();
+                return null;
+            });
         }
         catch (SQLException exception)
         {
@@ -63,23 +134,478 @@ abstract class SQLDatabase<T> implements SQLData<T>
     public List<T> query(String sql)
     {
         List<T> t = new ArrayList<>();
+        OperationTimer timer = startTimer(sql, "query");
 
         try
         {
-            PreparedStatement statement = connection.prepareStatement(sql);
-            ResultSet result = statement.executeQuery();
-            t = load(result);
-            result.close();
-            statement.close();
+            t = read((connection) ->
+            {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                ResultSet result = statement.executeQuery();
+                List<T> loaded = load(result);
+                result.close();
+                statement.close();
+                return loaded;
+            });
         }
         catch (SQLException exception)
         {
+            timer.fail();
             exception.printStackTrace();
         }
+        finally
+        {
+            timer.stop();
+        }
 
         return t;
     }
 
+    /**
+     * Update database with a prepared statement.
+     *
+     * @param sql SQL statement with a ? placeholder for each parameter.
+     * @param parameters Values to bind to the placeholders in order.
+     * @return Amount of rows changed, or -1 if the statement failed.
+     */
+    public int execute(String sql, Object... parameters)
+    {
+        OperationTimer timer = startTimer(sql, "update");
+        try
+        {
+            return write((connection) ->
+            {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                bind(statement, parameters);
+                int changed = statement.executeUpdate();
+                statement.close();
+                return changed;
+            });
+        }
+        catch (SQLException exception)
+        {
+            timer.fail();
+            failed(sql, Collections.singletonList(parameters), exception);
+            return -1;
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Write a consistent copy of the database into a folder while it stays in use. Databases that keep their data in
+     * local files override this. Others are backed up with the tools of their own server.
+     *
+     * @param target Folder to snapshot into. Created if needed.
+     * @throws IOException Expected to throw if the copy could not be made.
+     */
+    public void snapshot(File target) throws IOException
+    {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " can not be snapshot locally.");
+    }
+
+    /**
+     * Run a statement that writes a snapshot of the database, timed as a snapshot.
+     *
+     * @param target Folder the snapshot goes in.
+     * @param reading Run on a reading connection instead of the writer.
+     * @param sql Statement to run.
+     * @throws IOException Expected to throw if the statement failed.
+     */
+    protected void snapshot(File target, boolean reading, String sql) throws IOException
+    {
+        target.mkdirs();
+        OperationTimer timer = startTimer(sql, "snapshot");
+        SQLWork<Void> work = (connection) ->
+        {
+            Statement statement = connection.createStatement();
+            statement.execute(sql);
+            statement.close();
+            return null;
+        };
+
+        try
+        {
+            if (reading)
+            {
+                read(work);
+            }
+            else
+            {
+                write(work);
+            }
+        }
+        catch (SQLException exception)
+        {
+            timer.fail();
+            throw new IOException(exception);
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Quote a file path to be used inside a statement.
+     *
+     * @param file File.
+     * @return Absolute path with single quotes escaped.
+     */
+    protected static String quote(File file)
+    {
+        return "'" + file.getAbsolutePath().replace("'", "''") + "'";
+    }
+
+    /**
+     * Insert a row or update it if one with the same main key exists, in a single statement.
+     *
+     * @param tableName Name of table.
+     * @param values Values for every column in order.
+     */
+    public void upsert(String tableName, Object... values)
+    {
+        execute(getUpsert(tableName), values);
+    }
+
+    /**
+     * Insert or update many rows in a single transaction.
+     *
+     * @param tableName Name of table.
+     * @param rows Values for every column in order for each row.
+     */
+    public void upsertBatch(String tableName, List<Object[]> rows)
+    {
+        executeBatch(getUpsert(tableName), rows);
+    }
+
+    /**
+     * Retrieve statement that inserts or updates a row of the table, built once from the main key and columns.
+     *
+     * @param tableName Name of table.
+     * @return Upsert statement with a ? placeholder for each column.
+     */
+    public String getUpsert(String tableName)
+    {
+        if (mainKey == null || columns.isEmpty())
+        {
+            throw new IllegalStateException(getClass().getSimpleName() + " has no main key and columns to upsert " +
+                    "with.");
+        }
+
+        return upserts.computeIfAbsent(tableName, (table) -> upsert(table, mainKey, getColumnNames()));
+    }
+
+    /**
+     * Retrieve names of the columns, without their types and skipping table constraints.
+     *
+     * @return Column names in order.
+     */
+    public List<String> getColumnNames()
+    {
+        List<String> names = new ArrayList<>(columns.size());
+        for (String column : columns)
+        {
+            String name = column.trim().split("\\s+")[0];
+            if (!CONSTRAINTS.contains(name.toUpperCase()))
+            {
+                names.add(name.replace("`", "").replace("\"", ""));
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Build the statement this database uses to insert a row or update it if the key already exists.
+     *
+     * @param tableName Name of table.
+     * @param mainKey Column that identifies each row.
+     * @param columnNames Names of every column in order.
+     * @return Upsert statement with a ? placeholder for each column.
+     */
+    protected abstract String upsert(String tableName, String mainKey, List<String> columnNames);
+
+    /**
+     * Build insert that does nothing when the key already exists. Binds a value for every column in order followed by
+     * the key once more.
+     *
+     * @param tableName Name of table.
+     * @param mainKey Column that identifies each row.
+     * @param columnNames Names of the columns to insert in order.
+     * @return Insert statement changing no rows if the key exists.
+     */
+    protected String insertIfAbsent(String tableName, String mainKey, List<String> columnNames)
+    {
+        return "INSERT INTO " + tableName + " (" + String.join(", ", columnNames) + ") SELECT " +
+                placeholders(columnNames.size()) + " WHERE NOT EXISTS (SELECT 1 FROM " + tableName + " WHERE " +
+                mainKey + " = ?)";
+    }
+
+    /**
+     * Build a list of ? placeholders.
+     *
+     * @param amount Amount of placeholders.
+     * @return Placeholders separated by commas.
+     */
+    protected static String placeholders(int amount)
+    {
+        return String.join(", ", Collections.nCopies(amount, "?"));
+    }
+
+    /**
+     * Update database with the same prepared statement for many rows in a single transaction.
+     *
+     * @param sql SQL statement with a ? placeholder for each parameter.
+     * @param rows Values to bind to the placeholders for each row.
+     * @return Amount of rows changed by each row of values, or null if the statements failed.
+     */
+    public int[] executeBatch(String sql, List<Object[]> rows)
+    {
+        if (rows.isEmpty())
+        {
+            return new int[0];
+        }
+
+        OperationTimer timer = startTimer(sql, "batch");
+        try
+        {
+            return write((connection) ->
+            {
+                //Already inside a transaction someone else will commit.
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                PreparedStatement statement = connection.prepareStatement(sql);
+                try
+                {
+                    for (Object[] row : rows)
+                    {
+                        bind(statement, row);
+                        statement.addBatch();
+                    }
+
+                    int[] changed = statement.executeBatch();
+                    if (autoCommit)
+                    {
+                        connection.commit();
+                    }
+
+                    return changed;
+                }
+                catch (SQLException exception)
+                {
+                    if (autoCommit)
+                    {
+                        connection.rollback();
+                    }
+
+                    throw exception;
+                }
+                finally
+                {
+                    statement.close();
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+        }
+        catch (SQLException exception)
+        {
+            timer.fail();
+            failed(sql, rows, exception);
+            return null;
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Retrieve object from database with a prepared statement.
+     *
+     * @param sql SQL statement with a ? placeholder for each parameter.
+     * @param parameters Values to bind to the placeholders in order.
+     * @return Object from database.
+     */
+    public List<T> query(String sql, Object... parameters)
+    {
+        try
+        {
+            return queryStrict(sql, parameters);
+        }
+        catch (SQLException exception)
+        {
+            exception.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Retrieve object from database with a prepared statement, telling a failed query apart from one without rows.
+     *
+     * @param sql SQL statement with a ? placeholder for each parameter.
+     * @param parameters Values to bind to the placeholders in order.
+     * @return Object from database.
+     * @throws SQLException Expected to throw if the query failed.
+     */
+    public List<T> queryStrict(String sql, Object... parameters) throws SQLException
+    {
+        OperationTimer timer = startTimer(sql, "query");
+        try
+        {
+            return read((connection) ->
+            {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                bind(statement, parameters);
+                ResultSet result = statement.executeQuery();
+                List<T> loaded = load(result);
+                result.close();
+                statement.close();
+                return loaded;
+            });
+        }
+        catch (SQLException exception)
+        {
+            timer.fail();
+            throw exception;
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Run work that only reads from the database. Databases with separate read connections override this.
+     *
+     * @param work Work to run.
+     * @param <R> Type of result.
+     * @return Result of work.
+     * @throws SQLException Thrown by the work.
+     */
+    protected <R> R read(SQLWork<R> work) throws SQLException
+    {
+        return work.run(connection);
+    }
+
+    /**
+     * Run work that writes to the database. Databases with a dedicated writer override this.
+     *
+     * Writes share a single connection, so they run one at a time. Otherwise a transaction turning auto commit off
+     * would pull the writes of other threads into it, and could leave auto commit off for good.
+     *
+     * @param work Work to run.
+     * @param <R> Type of result.
+     * @return Result of work.
+     * @throws SQLException Thrown by the work.
+     */
+    protected <R> R write(SQLWork<R> work) throws SQLException
+    {
+        writeLock.lock();
+        try
+        {
+            return work.run(connection);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Handle a prepared write that could not be done. Databases that can hold on to writes until they are reachable
+     * again override this.
+     *
+     * @param sql SQL statement with a ? placeholder for each parameter.
+     * @param rows Values that were bound to the placeholders for each row.
+     * @param exception Reason the write failed.
+     */
+    protected void failed(String sql, List<Object[]> rows, SQLException exception)
+    {
+        exception.printStackTrace();
+    }
+
+    /**
+     * Bind parameters to a prepared statement in order.
+     *
+     * @param statement Prepared statement.
+     * @param parameters Values to bind.
+     * @throws SQLException Expected to throw if a value can not be converted.
+     */
+    protected void bind(PreparedStatement statement, Object... parameters) throws SQLException
+    {
+        for (int index = 0; index < parameters.length; index++)
+        {
+            statement.setObject(index + 1, parameters[index]);
+        }
+    }
+
+    /**
+     * Start measuring a statement, grouped by the table it touches.
+     *
+     * @param sql SQL statement.
+     * @param operation Name of the operation.
+     * @return Timer to stop once the statement is done.
+     */
+    protected OperationTimer startTimer(String sql, String operation)
+    {
+        return StorageMetrics.start(getClass().getSimpleName() + ":" + tableOf(sql), operation);
+    }
+
+    /**
+     * Find the table a statement works on. Statements are cached so this only parses each one once.
+     *
+     * @param sql SQL statement.
+     * @return Table name or "unknown" if none was found.
+     */
+    protected String tableOf(String sql)
+    {
+        String table = tables.get(sql);
+        if (table != null)
+        {
+            return table;
+        }
+
+        Matcher matcher = TABLE_PATTERN.matcher(sql);
+        table = matcher.find() ? matcher.group(1).toLowerCase() : "unknown";
+        if (tables.size() < MAX_CACHED_TABLES)
+        {
+            tables.put(sql, table);
+        }
+
+        return table;
+    }
+
+    /**
+     * Create table of the schema if needed, bring it up to the latest version and create missing indexes.
+     *
+     * @param schema Schema to apply.
+     */
+    public void applySchema(Schema schema)
+    {
+        OperationTimer timer = StorageMetrics.start(getClass().getSimpleName() + ":" + schema.getTableName(),
+                "schema");
+        try
+        {
+            write((connection) ->
+            {
+                schema.apply(connection);
+                return null;
+            });
+        }
+        catch (SQLException exception)
+        {
+            timer.fail();
+            exception.printStackTrace();
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
     /**
      * Create table in database.
      *
@@ -2,12 +2,26 @@ package com.github.rfsmassacre.heavenlibrary.databases;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handle SQLite databases.
  *
+ * In high throughput mode the database runs in WAL mode with a pool of read connections and a single writer thread.
+ * Reads never wait on writes, and writes queued at the same time are committed together in one transaction.
+ *
  * @param <T> Object type to store or query.
  */
 @SuppressWarnings({"unused", "ResultOfMethodCallIgnored"})
@@ -25,10 +39,25 @@ public abstract class SQLiteDatabase<T> extends SQLDatabase<T>
         }
     }
 
+    //Most writes committed together in a single transaction.
+    private static final int MAX_GROUP_SIZE = 256;
+    private static final int BUSY_TIMEOUT = 5000;
+
     //Database information.
     private final String absolutePath;
     private final String database;
 
+    //High throughput settings.
+    private final boolean highThroughput;
+    private final int readers;
+    private final String synchronous;
+    private final int cacheSize;
+    private final long mmapSize;
+    private BlockingQueue<Connection> readConnections;
+    private BlockingQueue<PendingWrite<?>> writes;
+    private Thread writer;
+    private volatile boolean running;
+
     /**
      * Save database while instantiating.
      *
@@ -37,8 +66,51 @@ public abstract class SQLiteDatabase<T> extends SQLDatabase<T>
      */
     public SQLiteDatabase(String absolutePath, String database)
     {
+        this(absolutePath, database, false, 0, null, 0, 0, null);
+    }
+
+    /**
+     * Save database while instantiating.
+     *
+     * @param absolutePath Path for databases file location.
+     * @param database Name of database.
+     * @param mainKey Column that identifies each row.
+     * @param columns Column definitions of the table.
+     */
+    public SQLiteDatabase(String absolutePath, String database, String mainKey, String... columns)
+    {
+        this(absolutePath, database, false, 0, null, 0, 0, mainKey, columns);
+    }
+
+    /**
+     * Save database while instantiating in high throughput mode.
+     *
+     * @param absolutePath Path for databases file location.
+     * @param database Name of database.
+     * @param readers Amount of read connections.
+     * @param synchronous Value of the synchronous pragma, such as NORMAL or FULL.
+     * @param cacheSize Page cache of each connection in KiB.
+     * @param mmapSize Bytes of the database file to memory map.
+     * @param mainKey Column that identifies each row.
+     * @param columns Column definitions of the table.
+     */
+    public SQLiteDatabase(String absolutePath, String database, int readers, String synchronous, int cacheSize,
+                          long mmapSize, String mainKey, String... columns)
+    {
+        this(absolutePath, database, true, readers, synchronous, cacheSize, mmapSize, mainKey, columns);
+    }
+
+    private SQLiteDatabase(String absolutePath, String database, boolean highThroughput, int readers,
+                           String synchronous, int cacheSize, long mmapSize, String mainKey, String... columns)
+    {
+        super(mainKey, columns);
         this.absolutePath = absolutePath;
         this.database = database;
+        this.highThroughput = highThroughput;
+        this.readers = Math.max(1, readers);
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
 
         try
         {
@@ -50,7 +122,6 @@ public abstract class SQLiteDatabase<T> extends SQLDatabase<T>
         }
     }
 
-
     /**
      * Connect to database.
      *
@@ -74,6 +145,352 @@ public abstract class SQLiteDatabase<T> extends SQLDatabase<T>
             }
         }
 
-        this.connection = DriverManager.getConnection("jdbc:sqlite:" + path + database + ".db");
+        String url = "jdbc:sqlite:" + path + database + ".db";
+        this.connection = DriverManager.getConnection(url);
+        if (!highThroughput)
+        {
+            return;
+        }
+
+        //WAL has to be enabled before readers open so they never take the rollback journal locks.
+        pragma(connection, "journal_mode = WAL");
+        pragma(connection, "synchronous = " + synchronous);
+        tune(connection);
+
+        this.readConnections = new ArrayBlockingQueue<>(readers);
+        for (int index = 0; index < readers; index++)
+        {
+            Connection reader = DriverManager.getConnection(url);
+            tune(reader);
+            pragma(reader, "query_only = ON");
+            readConnections.add(reader);
+        }
+
+        this.writes = new LinkedBlockingQueue<>();
+        this.running = true;
+        this.writer = new Thread(this::writeLoop, "SQLite-Writer-" + database);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Disconnect from database after every queued write is committed.
+     *
+     * @throws SQLException Expected to throw if host is no longer up.
+     */
+    @Override
+    public void close() throws SQLException
+    {
+        if (highThroughput && writer != null)
+        {
+            running = false;
+            try
+            {
+                writer.join();
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            //Writes queued after the writer stopped would never be committed.
+            failQueued(new SQLException("Database " + database + " is closed."));
+            for (Connection reader : readConnections)
+            {
+                reader.close();
+            }
+
+            readConnections.clear();
+        }
+
+        super.close();
+    }
+
+    /**
+     * Check whether this database runs with WAL, read connections and a single writer.
+     *
+     * @return True if in high throughput mode.
+     */
+    public boolean isHighThroughput()
+    {
+        return highThroughput;
+    }
+
+    /**
+     * Borrow a read connection for the duration of the work.
+     */
+    @Override
+    protected <R> R read(SQLWork<R> work) throws SQLException
+    {
+        if (!highThroughput)
+        {
+            return super.read(work);
+        }
+
+        Connection reader;
+        try
+        {
+            reader = readConnections.take();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection.", exception);
+        }
+
+        try
+        {
+            return work.run(reader);
+        }
+        finally
+        {
+            readConnections.add(reader);
+        }
+    }
+
+    /**
+     * Hand the work to the writer thread and wait until the transaction it lands in is committed.
+     */
+    @Override
+    protected <R> R write(SQLWork<R> work) throws SQLException
+    {
+        if (!highThroughput || Thread.currentThread() == writer)
+        {
+            return super.write(work);
+        }
+
+        if (!running)
+        {
+            throw new SQLException("Database " + database + " is closed.");
+        }
+
+        PendingWrite<R> pending = new PendingWrite<>(work);
+        writes.add(pending);
+        if (!running && writes.remove(pending))
+        {
+            //Closed while queueing, so the writer may already be gone.
+            throw new SQLException("Database " + database + " is closed.");
+        }
+
+        try
+        {
+            return pending.future.get();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for write to commit.", exception);
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof SQLException)
+            {
+                throw (SQLException) cause;
+            }
+
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Take whatever writes are queued and commit them together until closed and drained.
+     */
+    private void writeLoop()
+    {
+        List<PendingWrite<?>> group = new ArrayList<>();
+        while (running || !writes.isEmpty())
+        {
+            try
+            {
+                PendingWrite<?> first = writes.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                {
+                    continue;
+                }
+
+                group.add(first);
+                writes.drainTo(group, MAX_GROUP_SIZE - 1);
+                commit(group);
+            }
+            catch (InterruptedException exception)
+            {
+                running = false;
+            }
+            catch (RuntimeException | Error exception)
+            {
+                //Never leave a caller waiting, and keep the writer alive for the next group.
+                for (PendingWrite<?> pending : group)
+                {
+                    pending.future.completeExceptionally(exception);
+                }
+
+                exception.printStackTrace();
+            }
+            finally
+            {
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Fail every write still queued.
+     */
+    private void failQueued(SQLException exception)
+    {
+        List<PendingWrite<?>> left = new ArrayList<>();
+        writes.drainTo(left);
+        for (PendingWrite<?> pending : left)
+        {
+            pending.future.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * Run every write in its own savepoint so a failing one does not undo the others, then commit once.
+     */
+    private void commit(List<PendingWrite<?>> group)
+    {
+        List<PendingWrite<?>> succeeded = new ArrayList<>(group.size());
+        try
+        {
+            connection.setAutoCommit(false);
+            for (PendingWrite<?> pending : group)
+            {
+                Savepoint savepoint = connection.setSavepoint();
+                try
+                {
+                    pending.run(connection);
+                    connection.releaseSavepoint(savepoint);
+                    succeeded.add(pending);
+                }
+                catch (Throwable throwable)
+                {
+                    //Anything thrown by the work, such as binding a value of an unexpected type, only fails it.
+                    connection.rollback(savepoint);
+                    pending.future.completeExceptionally(throwable);
+                }
+            }
+
+            connection.commit();
+            for (PendingWrite<?> pending : succeeded)
+            {
+                pending.complete();
+            }
+        }
+        catch (SQLException | RuntimeException exception)
+        {
+            try
+            {
+                connection.rollback();
+            }
+            catch (SQLException rollbackException)
+            {
+                exception.addSuppressed(rollbackException);
+            }
+
+            for (PendingWrite<?> pending : group)
+            {
+                pending.future.completeExceptionally(exception);
+            }
+        }
+        finally
+        {
+            try
+            {
+                connection.setAutoCommit(true);
+            }
+            catch (SQLException exception)
+            {
+                exception.printStackTrace();
+            }
+        }
+    }
+
+    private void tune(Connection connection) throws SQLException
+    {
+        pragma(connection, "busy_timeout = " + BUSY_TIMEOUT);
+        pragma(connection, "cache_size = " + -cacheSize);
+        pragma(connection, "mmap_size = " + mmapSize);
+    }
+
+    /**
+     * Copy the database with the online backup API. In high throughput mode this runs on a read connection, so it
+     * copies the last committed state while writes carry on.
+     *
+     * @param target Folder to snapshot into. Created if needed.
+     * @throws IOException Expected to throw if the copy could not be made.
+     */
+    @Override
+    public void snapshot(File target) throws IOException
+    {
+        File file = new File(target, database + ".db");
+        snapshot(target, true, "backup to " + quoteCommand(file));
+    }
+
+    /**
+     * Quote a file path for the backup command of the driver. The driver strips the quotes without unescaping
+     * anything, so the path is wrapped in whichever quote it does not contain.
+     */
+    private static String quoteCommand(File file)
+    {
+        String path = file.getAbsolutePath();
+        return path.contains("\"") ? "'" + path + "'" : "\"" + path + "\"";
+    }
+
+    /**
+     * Build upsert that updates every column but the key when the key already exists.
+     */
+    @Override
+    protected String upsert(String tableName, String mainKey, List<String> columnNames)
+    {
+        List<String> updates = new ArrayList<>(columnNames.size());
+        for (String column : columnNames)
+        {
+            if (!column.equalsIgnoreCase(mainKey))
+            {
+                updates.add(column + " = excluded." + column);
+            }
+        }
+
+        return "INSERT INTO " + tableName + " (" + String.join(", ", columnNames) + ") VALUES (" +
+                placeholders(columnNames.size()) + ") ON CONFLICT (" + mainKey + ") DO UPDATE SET " +
+                String.join(", ", updates);
+    }
+
+    private static void pragma(Connection connection, String pragma) throws SQLException
+    {
+        Statement statement = connection.createStatement();
+        statement.execute("PRAGMA " + pragma);
+        statement.close();
+    }
+
+    /**
+     * Write waiting for the writer thread.
+     *
+     * @param <R> Type of result.
+     */
+    private static final class PendingWrite<R>
+    {
+        private final SQLWork<R> work;
+        private final CompletableFuture<R> future;
+        private R result;
+
+        private PendingWrite(SQLWork<R> work)
+        {
+            this.work = work;
+            this.future = new CompletableFuture<>();
+        }
+
+        private void run(Connection connection) throws SQLException
+        {
+            this.result = work.run(connection);
+        }
+
+        private void complete()
+        {
+            future.complete(result);
+        }
     }
 }
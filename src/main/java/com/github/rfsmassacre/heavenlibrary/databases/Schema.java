@@ -0,0 +1,331 @@
+package com.github.rfsmassacre.heavenlibrary.databases;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Versioned layout of a table along with the secondary indexes it should have.
+ *
+ * Migrations are applied in version order, each in its own transaction, and recorded in a shared schema_version table
+ * so they only ever run once. A table that does not exist yet is created with the latest columns, so its migrations
+ * are recorded without running. Note that MySQL commits implicitly around most schema statements, so a failed
+ * migration there can leave earlier statements of the same migration applied.
+ */
+@SuppressWarnings("unused")
+public class Schema
+{
+    public static final String VERSION_TABLE = "schema_version";
+
+    private static final String CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS " + VERSION_TABLE +
+            " (table_name VARCHAR(64) NOT NULL, version INT NOT NULL, description VARCHAR(255), " +
+            "applied_at BIGINT NOT NULL, PRIMARY KEY (table_name, version))";
+    private static final String SELECT_VERSION = "SELECT MAX(version) FROM " + VERSION_TABLE +
+            " WHERE table_name = ?";
+    private static final String INSERT_VERSION = "INSERT INTO " + VERSION_TABLE +
+            " (table_name, version, description, applied_at) VALUES (?, ?, ?, ?)";
+
+    /**
+     * Change to an existing table.
+     */
+    public static class Migration
+    {
+        private final int version;
+        private final String description;
+        private final List<String> statements;
+
+        private Migration(int version, String description, String... statements)
+        {
+            this.version = version;
+            this.description = description;
+            this.statements = Arrays.asList(statements);
+        }
+
+        public int getVersion()
+        {
+            return version;
+        }
+
+        public String getDescription()
+        {
+            return description;
+        }
+
+        public List<String> getStatements()
+        {
+            return statements;
+        }
+    }
+
+    /**
+     * Secondary index on one or more columns.
+     */
+    public static class Index
+    {
+        private final String name;
+        private final List<String> columns;
+
+        private Index(String name, String... columns)
+        {
+            this.name = name;
+            this.columns = Arrays.asList(columns);
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public List<String> getColumns()
+        {
+            return columns;
+        }
+    }
+
+    private final String tableName;
+    private final List<String> columns;
+    private final List<Index> indexes;
+    private final List<Migration> migrations;
+
+    /**
+     * Constructor.
+     *
+     * @param tableName Name of table.
+     * @param columns Column definitions of the latest version of the table.
+     */
+    public Schema(String tableName, String... columns)
+    {
+        this.tableName = tableName;
+        this.columns = Arrays.asList(columns);
+        this.indexes = new ArrayList<>();
+        this.migrations = new ArrayList<>();
+    }
+
+    /**
+     * Declare a secondary index that is created if it does not exist yet.
+     *
+     * @param name Name of index, unique in the database.
+     * @param columns Columns to index in order.
+     * @return This schema.
+     */
+    public Schema index(String name, String... columns)
+    {
+        indexes.add(new Index(name, columns));
+        return this;
+    }
+
+    /**
+     * Declare a migration that brings an older table up to the given version.
+     *
+     * @param version Version the table is at once applied. Must be above every earlier migration.
+     * @param description What the migration changes.
+     * @param statements Statements to run in order.
+     * @return This schema.
+     */
+    public Schema migration(int version, String description, String... statements)
+    {
+        if (!migrations.isEmpty() && version <= migrations.get(migrations.size() - 1).getVersion())
+        {
+            throw new IllegalArgumentException("Migration " + version + " of " + tableName + " is out of order.");
+        }
+
+        migrations.add(new Migration(version, description, statements));
+        return this;
+    }
+
+    public String getTableName()
+    {
+        return tableName;
+    }
+
+    public List<String> getColumns()
+    {
+        return Collections.unmodifiableList(columns);
+    }
+
+    public List<Index> getIndexes()
+    {
+        return Collections.unmodifiableList(indexes);
+    }
+
+    public List<Migration> getMigrations()
+    {
+        return Collections.unmodifiableList(migrations);
+    }
+
+    /**
+     * Retrieve version of the table once every migration is applied.
+     *
+     * @return Latest version, or 0 if there are no migrations.
+     */
+    public int getLatestVersion()
+    {
+        return migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).getVersion();
+    }
+
+    /**
+     * Create the table, apply missing migrations and create missing indexes. Transactions are only committed here if
+     * the connection was in auto commit mode, otherwise they are left to whoever opened them.
+     *
+     * @param connection Connection to apply the schema with.
+     * @throws SQLException Expected to throw if a statement fails. Migrations before it stay applied.
+     */
+    void apply(Connection connection) throws SQLException
+    {
+        boolean existed = exists(connection);
+        try (Statement statement = connection.createStatement())
+        {
+            statement.executeUpdate(CREATE_VERSION_TABLE);
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + tableName + " (" + String.join(", ", columns) +
+                    ")");
+        }
+
+        int version = getVersion(connection);
+        for (Migration migration : migrations)
+        {
+            if (migration.getVersion() > version)
+            {
+                transaction(connection, () ->
+                {
+                    if (existed)
+                    {
+                        try (Statement statement = connection.createStatement())
+                        {
+                            for (String sql : migration.getStatements())
+                            {
+                                statement.executeUpdate(sql);
+                            }
+                        }
+                    }
+
+                    record(connection, migration);
+                });
+            }
+        }
+
+        List<String> present = getIndexNames(connection);
+        for (Index index : indexes)
+        {
+            if (!present.contains(index.getName().toLowerCase()))
+            {
+                try (Statement statement = connection.createStatement())
+                {
+                    statement.executeUpdate("CREATE INDEX " + index.getName() + " ON " + tableName + " (" +
+                            String.join(", ", index.getColumns()) + ")");
+                }
+            }
+        }
+    }
+
+    private boolean exists(Connection connection) throws SQLException
+    {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet result = metaData.getTables(connection.getCatalog(), null, identifier(metaData, tableName),
+                new String[]{"TABLE"}))
+        {
+            return result.next();
+        }
+    }
+
+    private int getVersion(Connection connection) throws SQLException
+    {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_VERSION))
+        {
+            statement.setString(1, tableName);
+            try (ResultSet result = statement.executeQuery())
+            {
+                return result.next() ? result.getInt(1) : 0;
+            }
+        }
+    }
+
+    private void record(Connection connection, Migration migration) throws SQLException
+    {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_VERSION))
+        {
+            statement.setString(1, tableName);
+            statement.setInt(2, migration.getVersion());
+            statement.setString(3, migration.getDescription());
+            statement.setLong(4, System.currentTimeMillis());
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Retrieve names of indexes on the table in lower case. Not every database supports CREATE INDEX IF NOT EXISTS,
+     * so existing indexes are looked up through the connection meta data instead.
+     */
+    private List<String> getIndexNames(Connection connection) throws SQLException
+    {
+        List<String> names = new ArrayList<>();
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet result = metaData.getIndexInfo(connection.getCatalog(), null, identifier(metaData, tableName),
+                false, false))
+        {
+            while (result.next())
+            {
+                String name = result.getString("INDEX_NAME");
+                if (name != null)
+                {
+                    names.add(name.toLowerCase());
+                }
+            }
+        }
+
+        return names;
+    }
+
+    private static String identifier(DatabaseMetaData metaData, String name) throws SQLException
+    {
+        if (metaData.storesUpperCaseIdentifiers())
+        {
+            return name.toUpperCase();
+        }
+        else if (metaData.storesLowerCaseIdentifiers())
+        {
+            return name.toLowerCase();
+        }
+
+        return name;
+    }
+
+    private static void transaction(Connection connection, Step step) throws SQLException
+    {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try
+        {
+            step.run();
+            if (autoCommit)
+            {
+                connection.commit();
+            }
+        }
+        catch (SQLException exception)
+        {
+            if (autoCommit)
+            {
+                connection.rollback();
+            }
+
+            throw exception;
+        }
+        finally
+        {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step
+    {
+        void run() throws SQLException;
+    }
+}
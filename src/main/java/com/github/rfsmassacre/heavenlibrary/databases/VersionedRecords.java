@@ -0,0 +1,393 @@
+package com.github.rfsmassacre.heavenlibrary.databases;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Saves rows of a table shared between servers without overwriting newer data, with short ownership leases deciding
+ * who wins a conflict.
+ *
+ * Every row carries a version that goes up on each save. A save only goes through if the row is still at the version
+ * it was read at, or if this server holds a live lease on the row, both checked by the same single update. A save that
+ * changes nothing is a conflict, and the caller should read the row again. Only saving a row that does not exist yet
+ * takes a second statement to insert it.
+ *
+ * Leases are taken when a server starts working on a row, renewed in bulk by a heartbeat and given up by the last save.
+ * They never block anyone, they only decide that the owner's save wins over a newer version. Lease times come from the
+ * clock of each server, so server clocks should not drift apart by more than a fraction of the lease. When the owner
+ * wins over a newer version, the version it gets back is behind the row, so its later saves keep relying on the lease
+ * until it reads the row again.
+ *
+ * A save that fails, even one a spooling database replays later, leaves the version where it was. The replayed update
+ * only goes through if the lease is still live or nobody saved the row since. Otherwise it changes nothing, and the
+ * next save from this server conflicts and reads the row again.
+ *
+ * Copying rows in from elsewhere, such as a migration or crash recovery, overwrites them whatever their version.
+ */
+@SuppressWarnings("unused")
+public class VersionedRecords
+{
+    public static final long CONFLICT = -1L;
+    public static final long FAILED = -2L;
+
+    //Column definitions every versioned table needs on top of its own.
+    public static final String[] COLUMNS = new String[]
+    {
+        "version BIGINT NOT NULL DEFAULT 0",
+        "lease_owner VARCHAR(36)",
+        "lease_until BIGINT NOT NULL DEFAULT 0"
+    };
+
+    private static final int KEY_BATCH = 100;
+
+    /**
+     * Retrieve statements adding the version and lease columns to an existing table, for use in a schema migration.
+     *
+     * @param tableName Name of table.
+     * @return Statements to run in order.
+     */
+    public static String[] migration(String tableName)
+    {
+        String[] statements = new String[COLUMNS.length];
+        for (int index = 0; index < COLUMNS.length; index++)
+        {
+            statements[index] = "ALTER TABLE " + tableName + " ADD COLUMN " + COLUMNS[index];
+        }
+
+        return statements;
+    }
+
+    private final SQLDatabase<?> database;
+    private final String tableName;
+    private final String keyColumn;
+    private final String owner;
+    private final String update;
+    private final String updateAndRelease;
+    private final String overwrite;
+    private final String insert;
+    private final String acquire;
+    private volatile Consumer<List<String>> conflictHandler;
+
+    /**
+     * Constructor.
+     *
+     * @param database Database holding the table.
+     * @param tableName Name of table, which must have the version and lease columns.
+     * @param keyColumn Column that identifies each row.
+     * @param dataColumns Columns written by each save, in the order their values are given.
+     */
+    public VersionedRecords(SQLDatabase<?> database, String tableName, String keyColumn, String... dataColumns)
+    {
+        this.database = database;
+        this.tableName = tableName;
+        this.keyColumn = keyColumn;
+        this.owner = UUID.randomUUID().toString();
+
+        StringBuilder sets = new StringBuilder();
+        for (String column : dataColumns)
+        {
+            sets.append(column).append(" = ?, ");
+        }
+
+        sets.append("version = version + 1");
+        this.overwrite = "UPDATE " + tableName + " SET " + sets + " WHERE " + keyColumn + " = ?";
+        String where = " WHERE " + keyColumn + " = ? AND (version = ? OR (lease_owner = ? AND lease_until > ?))";
+        this.update = "UPDATE " + tableName + " SET " + sets + where;
+
+        //The lease end is cleared first, since MySQL already sees the new owner in later assignments.
+        this.updateAndRelease = "UPDATE " + tableName + " SET " + sets + ", lease_until = CASE WHEN lease_owner = ? " +
+                "THEN 0 ELSE lease_until END, lease_owner = CASE WHEN lease_owner = ? THEN NULL ELSE lease_owner END" +
+                where;
+
+        List<String> columns = new ArrayList<>();
+        columns.add(keyColumn);
+        columns.addAll(Arrays.asList(dataColumns));
+        columns.add("version");
+        this.insert = database.insertIfAbsent(tableName, keyColumn, columns);
+        this.acquire = "UPDATE " + tableName + " SET lease_owner = ?, lease_until = ? WHERE " + keyColumn +
+                " = ? AND (lease_owner IS NULL OR lease_owner = ? OR lease_until < ?)";
+    }
+
+    /**
+     * Retrieve the id this server's leases are held under.
+     *
+     * @return Random id picked when created.
+     */
+    public String getOwner()
+    {
+        return owner;
+    }
+
+    /**
+     * Set what to do with rows whose save conflicted, such as reading them again.
+     *
+     * @param conflictHandler Called from the saving thread with the keys of conflicting rows.
+     */
+    public void onConflict(Consumer<List<String>> conflictHandler)
+    {
+        this.conflictHandler = conflictHandler;
+    }
+
+    /**
+     * Save a row if nobody saved it since it was read, or if this server owns it.
+     *
+     * @param key Key of row.
+     * @param version Version the row was read at, or 0 if it was never saved.
+     * @param release Give up the lease on the row in the same statement.
+     * @param values Values of the data columns in order.
+     * @return New version of the row, CONFLICT if someone else saved it first, or FAILED if the database failed or
+     * the save was spooled, in which case the caller keeps the version it had.
+     */
+    public long save(String key, long version, boolean release, Object... values)
+    {
+        int changed = database.execute(release ? updateAndRelease : update, updateRow(key, version, release, values));
+        if (changed < 0)
+        {
+            //A spooling database replays the update, and the insert behind it in case the row is missing.
+            database.execute(insert, insertRow(key, version, values));
+            return FAILED;
+        }
+        else if (changed > 0)
+        {
+            return version + 1;
+        }
+
+        //Nothing matched, so the row is either missing or newer.
+        changed = database.execute(insert, insertRow(key, version, values));
+        if (changed < 0)
+        {
+            return FAILED;
+        }
+
+        if (changed == 0)
+        {
+            conflicted(Collections.singletonList(key));
+            return CONFLICT;
+        }
+
+        return version + 1;
+    }
+
+    /**
+     * Save many rows together, each under the same rules as a single save.
+     *
+     * @param keys Keys of rows.
+     * @param versions Version each row was read at, or 0 if it was never saved.
+     * @param values Values of the data columns of each row.
+     * @return New version of each row, CONFLICT for rows someone else saved first, or FAILED for rows that could not
+     * be written.
+     */
+    public long[] saveAll(List<String> keys, long[] versions, List<Object[]> values)
+    {
+        long[] results = new long[keys.size()];
+        List<Object[]> rows = new ArrayList<>(keys.size());
+        for (int index = 0; index < keys.size(); index++)
+        {
+            rows.add(updateRow(keys.get(index), versions[index], false, values.get(index)));
+        }
+
+        int[] changed = database.executeBatch(update, rows);
+        if (changed == null)
+        {
+            List<Object[]> inserts = new ArrayList<>(keys.size());
+            for (int index = 0; index < keys.size(); index++)
+            {
+                inserts.add(insertRow(keys.get(index), versions[index], values.get(index)));
+            }
+
+            database.executeBatch(insert, inserts);
+            Arrays.fill(results, FAILED);
+            return results;
+        }
+
+        List<Integer> missing = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (int index = 0; index < results.length; index++)
+        {
+            //Drivers unable to count rows in a batch report success without a count.
+            if (changed[index] > 0 || changed[index] == Statement.SUCCESS_NO_INFO)
+            {
+                results[index] = versions[index] + 1;
+            }
+            else
+            {
+                missing.add(index);
+                inserts.add(insertRow(keys.get(index), versions[index], values.get(index)));
+            }
+        }
+
+        if (missing.isEmpty())
+        {
+            return results;
+        }
+
+        int[] inserted = database.executeBatch(insert, inserts);
+        List<String> conflicts = new ArrayList<>();
+        for (int position = 0; position < missing.size(); position++)
+        {
+            int index = missing.get(position);
+            if (inserted == null)
+            {
+                results[index] = FAILED;
+            }
+            else if (inserted[position] == 0)
+            {
+                results[index] = CONFLICT;
+                conflicts.add(keys.get(index));
+            }
+            else
+            {
+                results[index] = versions[index] + 1;
+            }
+        }
+
+        conflicted(conflicts);
+        return results;
+    }
+
+    /**
+     * Save many rows whatever their version and lease, moving their version up. Leases are left alone. Meant for
+     * copying rows in from elsewhere, where the copies are meant to win.
+     *
+     * @param keys Keys of rows.
+     * @param values Values of the data columns of each row.
+     * @return Amount of rows written. Rows that failed, or that someone else inserted between the update and the
+     * insert, are not.
+     */
+    public int overwriteAll(List<String> keys, List<Object[]> values)
+    {
+        List<Object[]> rows = new ArrayList<>(keys.size());
+        for (int index = 0; index < keys.size(); index++)
+        {
+            List<Object> row = new ArrayList<>(Arrays.asList(values.get(index)));
+            row.add(keys.get(index));
+            rows.add(row.toArray());
+        }
+
+        int[] changed = database.executeBatch(overwrite, rows);
+        List<Object[]> inserts = new ArrayList<>();
+        int written = 0;
+        for (int index = 0; index < keys.size(); index++)
+        {
+            if (changed != null && (changed[index] > 0 || changed[index] == Statement.SUCCESS_NO_INFO))
+            {
+                written++;
+            }
+            else
+            {
+                //Also queued after a failed update, so a spooling database replays the insert behind it.
+                inserts.add(insertRow(keys.get(index), 0L, values.get(index)));
+            }
+        }
+
+        int[] inserted = database.executeBatch(insert, inserts);
+        if (changed != null && inserted != null)
+        {
+            for (int count : inserted)
+            {
+                if (count > 0 || count == Statement.SUCCESS_NO_INFO)
+                {
+                    written++;
+                }
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * Take the lease on a row if it is free, expired or already ours.
+     *
+     * @param key Key of row.
+     * @param leaseMillis Milliseconds the lease lasts unless renewed.
+     * @return True if this server owns the row now. False if another server does or the row does not exist yet.
+     */
+    public boolean acquire(String key, long leaseMillis)
+    {
+        long now = System.currentTimeMillis();
+        return database.execute(acquire, owner, now + leaseMillis, key, owner, now) > 0;
+    }
+
+    /**
+     * Extend the leases this server holds on rows, a batch of rows per statement.
+     *
+     * @param keys Keys of rows.
+     * @param leaseMillis Milliseconds the leases last from now.
+     * @return Amount of leases still held and renewed.
+     */
+    public int renew(Collection<String> keys, long leaseMillis)
+    {
+        long until = System.currentTimeMillis() + leaseMillis;
+        return forBatches(keys, "UPDATE " + tableName + " SET lease_until = ? WHERE lease_owner = ? AND " +
+                keyColumn + " IN ", until, owner);
+    }
+
+    /**
+     * Give up the leases this server holds on rows.
+     *
+     * @param keys Keys of rows.
+     */
+    public void release(Collection<String> keys)
+    {
+        forBatches(keys, "UPDATE " + tableName + " SET lease_until = 0, lease_owner = NULL WHERE lease_owner = ? AND " +
+                keyColumn + " IN ", owner);
+    }
+
+    private void conflicted(List<String> keys)
+    {
+        Consumer<List<String>> handler = conflictHandler;
+        if (handler != null && !keys.isEmpty())
+        {
+            handler.accept(keys);
+        }
+    }
+
+    private Object[] updateRow(String key, long version, boolean release, Object[] values)
+    {
+        List<Object> row = new ArrayList<>(values.length + 6);
+        row.addAll(Arrays.asList(values));
+        if (release)
+        {
+            row.add(owner);
+            row.add(owner);
+        }
+
+        row.add(key);
+        row.add(version);
+        row.add(owner);
+        row.add(System.currentTimeMillis());
+        return row.toArray();
+    }
+
+    private Object[] insertRow(String key, long version, Object[] values)
+    {
+        List<Object> row = new ArrayList<>(values.length + 3);
+        row.add(key);
+        row.addAll(Arrays.asList(values));
+        row.add(version + 1);
+        row.add(key);
+        return row.toArray();
+    }
+
+    private int forBatches(Collection<String> keys, String prefix, Object... parameters)
+    {
+        List<String> all = new ArrayList<>(keys);
+        int changed = 0;
+        for (int start = 0; start < all.size(); start += KEY_BATCH)
+        {
+            List<String> batch = all.subList(start, Math.min(all.size(), start + KEY_BATCH));
+            List<Object> row = new ArrayList<>(Arrays.asList(parameters));
+            row.addAll(batch);
+            changed += Math.max(0, database.execute(prefix + "(" + SQLDatabase.placeholders(batch.size()) + ")",
+                    row.toArray()));
+        }
+
+        return changed;
+    }
+}
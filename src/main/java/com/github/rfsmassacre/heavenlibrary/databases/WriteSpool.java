@@ -0,0 +1,337 @@
+package com.github.rfsmassacre.heavenlibrary.databases;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable local queue of writes that could not reach the database. Each write is appended as one JSON line and synced
+ * to disk before returning, with every parameter tagged by type so it binds the same way once replayed.
+ *
+ * Lines that can not be read, such as one torn by a crash while appending, are skipped on their own. They are moved
+ * to a file next to the spool once the writes around them were replayed, so nothing is ever dropped unseen.
+ */
+final class WriteSpool
+{
+    /**
+     * Write waiting to be replayed.
+     */
+    static final class Entry
+    {
+        final String sql;
+        final List<Object[]> rows;
+
+        Entry(String sql, List<Object[]> rows)
+        {
+            this.sql = sql;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Everything in the spool file, split into writes and lines that could not be read.
+     */
+    private static final class Contents
+    {
+        private final List<Entry> entries = new ArrayList<>();
+        private final List<String> unreadable = new ArrayList<>();
+        private final List<RuntimeException> reasons = new ArrayList<>();
+    }
+
+    private final File file;
+    private int pending;
+
+    /**
+     * Constructor.
+     *
+     * @param file File writes are spooled to. Entries already in it are kept.
+     */
+    WriteSpool(File file)
+    {
+        this.file = file;
+        this.pending = read().size();
+    }
+
+    /**
+     * Append a write to the spool.
+     *
+     * @param sql SQL statement with a ? placeholder for each parameter.
+     * @param rows Values to bind to the placeholders for each row.
+     * @throws IOException Expected to throw if the file can not be written.
+     */
+    synchronized void append(String sql, List<Object[]> rows) throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs())
+        {
+            throw new IOException("Could not create " + parent);
+        }
+
+        try (FileOutputStream stream = new FileOutputStream(file, true))
+        {
+            //A line torn by a crash must not swallow the start of this one.
+            String prefix = endsTorn() ? "\n" : "";
+            stream.write((prefix + encode(new Entry(sql, rows)) + "\n").getBytes(StandardCharsets.UTF_8));
+            stream.getFD().sync();
+        }
+
+        pending++;
+    }
+
+    /**
+     * Retrieve every spooled write in the order they were added, skipping lines that can not be read.
+     *
+     * @return Spooled writes.
+     */
+    synchronized List<Entry> read()
+    {
+        try
+        {
+            return load().entries;
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Drop the first writes once they have been replayed. Whatever remains is rewritten and replaces the spool in one
+     * move, so a crash never loses writes that were not replayed yet. Unreadable lines are moved out of the way first.
+     *
+     * @param amount Amount of writes that were replayed.
+     * @throws IOException Expected to throw if the file can not be read or written.
+     */
+    synchronized void remove(int amount) throws IOException
+    {
+        Contents contents = load();
+        if (!contents.unreadable.isEmpty())
+        {
+            quarantine(contents);
+        }
+
+        List<Entry> entries = contents.entries;
+        if (amount >= entries.size())
+        {
+            Files.deleteIfExists(file.toPath());
+            pending = 0;
+            return;
+        }
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary))
+        {
+            for (Entry entry : entries.subList(amount, entries.size()))
+            {
+                stream.write((encode(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+
+            stream.getFD().sync();
+        }
+
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        pending = entries.size() - amount;
+    }
+
+    synchronized boolean isEmpty()
+    {
+        return pending == 0;
+    }
+
+    synchronized int size()
+    {
+        return pending;
+    }
+
+    /**
+     * Read the whole spool file, one line at a time so a bad line only loses itself.
+     */
+    private Contents load() throws IOException
+    {
+        Contents contents = new Contents();
+        if (!file.exists())
+        {
+            return contents;
+        }
+
+        //Decoded leniently, since a torn line may end inside a character.
+        String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        for (String line : text.split("\n"))
+        {
+            if (line.trim().isEmpty())
+            {
+                continue;
+            }
+
+            try
+            {
+                contents.entries.add(decode(line));
+            }
+            catch (RuntimeException exception)
+            {
+                contents.unreadable.add(line);
+                contents.reasons.add(exception);
+            }
+        }
+
+        return contents;
+    }
+
+    /**
+     * Append unreadable lines to a file next to the spool, where they can be looked at and fixed by hand.
+     */
+    private void quarantine(Contents contents) throws IOException
+    {
+        File unreadable = new File(file.getPath() + ".unreadable");
+        try (FileOutputStream stream = new FileOutputStream(unreadable, true))
+        {
+            for (String line : contents.unreadable)
+            {
+                stream.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+
+            stream.getFD().sync();
+        }
+
+        IOException exception = new IOException("Moved " + contents.unreadable.size() + " unreadable spooled " +
+                "writes to " + unreadable);
+        for (RuntimeException reason : contents.reasons)
+        {
+            exception.addSuppressed(reason);
+        }
+
+        exception.printStackTrace();
+    }
+
+    /**
+     * Check whether the spool file ends in the middle of a line.
+     */
+    private boolean endsTorn() throws IOException
+    {
+        if (!file.exists() || file.length() == 0)
+        {
+            return false;
+        }
+
+        try (RandomAccessFile access = new RandomAccessFile(file, "r"))
+        {
+            access.seek(access.length() - 1);
+            return access.read() != '\n';
+        }
+    }
+
+    private static String encode(Entry entry)
+    {
+        JsonObject object = new JsonObject();
+        object.addProperty("sql", entry.sql);
+        JsonArray rows = new JsonArray();
+        for (Object[] row : entry.rows)
+        {
+            JsonArray values = new JsonArray();
+            for (Object value : row)
+            {
+                values.add(encode(value));
+            }
+
+            rows.add(values);
+        }
+
+        object.add("rows", rows);
+        return object.toString();
+    }
+
+    private static JsonElement encode(Object value)
+    {
+        if (value == null)
+        {
+            return JsonNull.INSTANCE;
+        }
+
+        JsonObject object = new JsonObject();
+        if (value instanceof Integer)
+        {
+            object.addProperty("int", (Integer) value);
+        }
+        else if (value instanceof Long)
+        {
+            object.addProperty("long", (Long) value);
+        }
+        else if (value instanceof Double || value instanceof Float)
+        {
+            object.addProperty("double", ((Number) value).doubleValue());
+        }
+        else if (value instanceof Boolean)
+        {
+            object.addProperty("boolean", (Boolean) value);
+        }
+        else
+        {
+            object.addProperty("string", value.toString());
+        }
+
+        return object;
+    }
+
+    private static Entry decode(String line)
+    {
+        JsonObject object = JsonParser.parseString(line).getAsJsonObject();
+        List<Object[]> rows = new ArrayList<>();
+        for (JsonElement element : object.getAsJsonArray("rows"))
+        {
+            JsonArray values = element.getAsJsonArray();
+            Object[] row = new Object[values.size()];
+            for (int index = 0; index < row.length; index++)
+            {
+                row[index] = decode(values.get(index));
+            }
+
+            rows.add(row);
+        }
+
+        return new Entry(object.get("sql").getAsString(), rows);
+    }
+
+    private static Object decode(JsonElement element)
+    {
+        if (element.isJsonNull())
+        {
+            return null;
+        }
+
+        JsonObject object = element.getAsJsonObject();
+        if (object.has("int"))
+        {
+            return object.get("int").getAsInt();
+        }
+        else if (object.has("long"))
+        {
+            return object.get("long").getAsLong();
+        }
+        else if (object.has("double"))
+        {
+            return object.get("double").getAsDouble();
+        }
+        else if (object.has("boolean"))
+        {
+            return object.get("boolean").getAsBoolean();
+        }
+
+        JsonPrimitive string = object.getAsJsonPrimitive("string");
+        return string.getAsString();
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.rfsmassacre.heavenlibrary.files;
+
+import com.github.rfsmassacre.heavenlibrary.metrics.OperationTimer;
+import com.github.rfsmassacre.heavenlibrary.metrics.StorageMetrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Packs snapshot folders into zip archives and keeps only the newest ones.
+ *
+ * Archiving is meant to run on a background thread. Reading the snapshot is rate limited so the archive is built
+ * slowly instead of competing with the server for disk bandwidth.
+ */
+@SuppressWarnings({"unused", "ResultOfMethodCallIgnored"})
+public class BackupArchiver
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File folder;
+    private final int keep;
+    private final long bytesPerSecond;
+
+    /**
+     * Constructor.
+     *
+     * @param folder Folder archives are written to.
+     * @param keep Amount of archives kept. Older ones are deleted.
+     * @param bytesPerSecond Most bytes read per second while archiving, or 0 for no limit.
+     */
+    public BackupArchiver(File folder, int keep, long bytesPerSecond)
+    {
+        this.folder = folder;
+        this.keep = keep;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Pack every file in a snapshot folder into a new archive, then delete the snapshot folder.
+     *
+     * @param snapshot Folder holding the snapshot.
+     * @param name Name of the archive without extension.
+     * @return Archive file.
+     * @throws IOException Expected to throw if the snapshot can not be read or the archive not written.
+     */
+    public File archive(File snapshot, String name) throws IOException
+    {
+        OperationTimer timer = StorageMetrics.start(getClass().getSimpleName() + ":" + folder.getName(), "archive");
+        folder.mkdirs();
+        File archive = new File(folder, name + ".zip");
+        File temporary = new File(folder, name + ".zip.tmp");
+        try
+        {
+            long started = System.nanoTime();
+            long read = 0L;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(temporary)))
+            {
+                File[] files = snapshot.listFiles();
+                if (files != null)
+                {
+                    for (File file : files)
+                    {
+                        zip.putNextEntry(new ZipEntry(file.getName()));
+                        try (InputStream input = Files.newInputStream(file.toPath()))
+                        {
+                            int length;
+                            while ((length = input.read(buffer)) > 0)
+                            {
+                                zip.write(buffer, 0, length);
+                                read += length;
+                                throttle(started, read);
+                            }
+                        }
+
+                        zip.closeEntry();
+                    }
+                }
+            }
+
+            FileSnapshots.replace(temporary, archive);
+            deleteFolder(snapshot);
+            prune();
+            return archive;
+        }
+        catch (IOException exception)
+        {
+            timer.fail();
+            temporary.delete();
+            throw exception;
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Delete a folder along with every file in it.
+     *
+     * @param snapshot Folder to delete.
+     */
+    public void deleteFolder(File snapshot)
+    {
+        File[] files = snapshot.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+
+        snapshot.delete();
+    }
+
+    /**
+     * Retrieve archives from oldest to newest.
+     *
+     * @return Archives.
+     */
+    public File[] getArchives()
+    {
+        File[] archives = folder.listFiles((directory, name) -> name.endsWith(".zip"));
+        if (archives == null)
+        {
+            return new File[0];
+        }
+
+        Arrays.sort(archives, Comparator.comparingLong(File::lastModified).thenComparing(File::getName));
+        return archives;
+    }
+
+    private void prune()
+    {
+        File[] archives = getArchives();
+        for (int index = 0; index < archives.length - keep; index++)
+        {
+            archives[index].delete();
+        }
+    }
+
+    /**
+     * Sleep until the bytes read so far fit in the rate limit.
+     */
+    private void throttle(long started, long read) throws IOException
+    {
+        if (bytesPerSecond <= 0)
+        {
+            return;
+        }
+
+        long ahead = read * 1000L / bytesPerSecond - (System.nanoTime() - started) / 1000000L;
+        if (ahead > 0)
+        {
+            try
+            {
+                Thread.sleep(ahead);
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while archiving.", exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.rfsmassacre.heavenlibrary.files;
+
+import com.github.rfsmassacre.heavenlibrary.codecs.Codec;
+import com.github.rfsmassacre.heavenlibrary.codecs.Codecs;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * YamlStorage converting with the codec generated at compile time for a class annotated with GenerateCodec.
+ *
+ * @param <T> Class type of object to be saved or read.
+ */
+@SuppressWarnings("unused")
+public abstract class CodecYamlStorage<T> extends YamlStorage<T>
+{
+    private final Codec<T> codec;
+
+    /**
+     * Constructor.
+     * @param plugin Plugin where files will be for.
+     * @param folderName Name of folder.
+     * @param clazz Class type of the object being handled.
+     * @throws IllegalStateException If no codec was generated for the class, such as when the sources were compiled
+     * without the codec processor.
+     */
+    public CodecYamlStorage(JavaPlugin plugin, String folderName, Class<T> clazz)
+    {
+        super(plugin, folderName);
+        this.codec = Codecs.get(clazz);
+        if (codec == null)
+        {
+            throw new IllegalStateException("No codec was generated for " + clazz.getName() + ". Compile it with " +
+                    "the codec processor.");
+        }
+    }
+
+    /**
+     * Convert a file's configuration into an object with the generated codec.
+     * @param configuration Configuration read from the file.
+     * @return Object from the configuration.
+     */
+    @Override
+    public T load(YamlConfiguration configuration)
+    {
+        return codec.load(configuration);
+    }
+
+    /**
+     * Convert an object into the configuration written to its file with the generated codec.
+     * @param t Generic type.
+     * @return Configuration to write.
+     */
+    @Override
+    public YamlConfiguration save(T t)
+    {
+        YamlConfiguration configuration = new YamlConfiguration();
+        codec.save(t, configuration);
+        return configuration;
+    }
+}
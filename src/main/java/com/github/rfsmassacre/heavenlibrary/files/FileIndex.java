@@ -0,0 +1,571 @@
+package com.github.rfsmassacre.heavenlibrary.files;
+
+import com.github.rfsmassacre.heavenlibrary.metrics.OperationTimer;
+import com.github.rfsmassacre.heavenlibrary.metrics.StorageMetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Secondary indexes over a folder of files, so objects can be found by a field without reading every file.
+ *
+ * Each index extracts one value from an object. The values of every file are kept in a sidecar file next to the data,
+ * which changes are appended to and which is rewritten whole once it holds more changes than files. It is read once on
+ * first use and then checked against the size and modification time of every file, so files changed or added while
+ * nothing was recording them are indexed again and files that are gone are dropped.
+ *
+ * @param <T> Class type of object in the files.
+ */
+@SuppressWarnings({"unused", "ResultOfMethodCallIgnored"})
+public class FileIndex<T>
+{
+    private static final int VERSION = 1;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int MIN_COMPACT = 1024;
+
+    /**
+     * What was indexed of a file.
+     */
+    private static final class Record
+    {
+        private final long modified;
+        private final long length;
+        private final String[] values;
+
+        private Record(long modified, long length, String[] values)
+        {
+            this.modified = modified;
+            this.length = length;
+            this.values = values;
+        }
+
+        private boolean matches(File file)
+        {
+            return file.lastModified() == modified && file.length() == length;
+        }
+    }
+
+    private final File sidecar;
+    private final Supplier<File[]> lister;
+    private final Function<String, T> reader;
+    private final String metricsName;
+    private final List<String> names;
+    private final List<Function<T, String>> extractors;
+    private final Map<String, Record> records;
+    private final List<Map<String, Set<String>>> postings;
+    private boolean loaded;
+    private int appended;
+
+    /**
+     * Constructor.
+     *
+     * @param sidecar File the indexes are kept in.
+     * @param lister Lists every data file in the folder.
+     * @param reader Reads the object of a data file by its file name.
+     */
+    public FileIndex(File sidecar, Supplier<File[]> lister, Function<String, T> reader)
+    {
+        this.sidecar = sidecar;
+        this.lister = lister;
+        this.reader = reader;
+        this.metricsName = getClass().getSimpleName() + ":" + sidecar.getParentFile().getName() + "/" +
+                sidecar.getName();
+        this.names = new ArrayList<>();
+        this.extractors = new ArrayList<>();
+        this.records = new HashMap<>();
+        this.postings = new ArrayList<>();
+    }
+
+    /**
+     * Declare an index. Every index has to be declared before the first lookup or change.
+     *
+     * @param name Name of index.
+     * @param extractor Extracts the indexed value of an object, which may be null.
+     * @return This index for chaining.
+     */
+    public synchronized FileIndex<T> declare(String name, Function<T, String> extractor)
+    {
+        if (loaded)
+        {
+            throw new IllegalStateException("Index " + name + " declared after the indexes were loaded.");
+        }
+
+        names.add(name);
+        extractors.add(extractor);
+        postings.add(new HashMap<>());
+        return this;
+    }
+
+    /**
+     * Retrieve names of every file whose object has the value in an index.
+     *
+     * @param name Name of index.
+     * @param value Value to look for.
+     * @return File names, which may be empty.
+     */
+    public synchronized Set<String> find(String name, String value)
+    {
+        load();
+        int index = names.indexOf(name);
+        if (index < 0)
+        {
+            throw new IllegalArgumentException("No index named " + name + ".");
+        }
+
+        Set<String> fileNames = postings.get(index).get(value);
+        return fileNames == null ? Collections.emptySet() : new HashSet<>(fileNames);
+    }
+
+    /**
+     * Read the objects of every file with the value in an index. Only the matching files are read. A file changed since
+     * it was indexed is indexed again and left out if it no longer matches.
+     *
+     * @param name Name of index.
+     * @param value Value to look for.
+     * @return Objects with the value.
+     */
+    public List<T> lookup(String name, String value)
+    {
+        int index;
+        synchronized (this)
+        {
+            load();
+            index = names.indexOf(name);
+        }
+
+        List<T> found = new ArrayList<>();
+        for (String fileName : find(name, value))
+        {
+            File file = new File(sidecar.getParentFile(), fileName);
+            T t = file.exists() ? read(file) : null;
+            synchronized (this)
+            {
+                if (t == null)
+                {
+                    if (unindex(fileName))
+                    {
+                        append(fileName, null);
+                    }
+
+                    continue;
+                }
+
+                Record record = records.get(fileName);
+                if (record == null || !record.matches(file))
+                {
+                    record = record(file, t);
+                    index(fileName, record);
+                    append(fileName, record);
+                    if (!value.equals(record.values[index]))
+                    {
+                        continue;
+                    }
+                }
+            }
+
+            found.add(t);
+        }
+
+        return found;
+    }
+
+    /**
+     * Retrieve every value an index holds along with how many files have it.
+     *
+     * @param name Name of index.
+     * @return File count by value.
+     */
+    public synchronized Map<String, Integer> getValues(String name)
+    {
+        load();
+        int index = names.indexOf(name);
+        if (index < 0)
+        {
+            throw new IllegalArgumentException("No index named " + name + ".");
+        }
+
+        Map<String, Integer> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> posting : postings.get(index).entrySet())
+        {
+            values.put(posting.getKey(), posting.getValue().size());
+        }
+
+        return values;
+    }
+
+    /**
+     * Check whether the file of a lookup still holds what was indexed, such as after it was edited by hand.
+     *
+     * @param file Data file.
+     * @return True if it was not changed since it was indexed.
+     */
+    public synchronized boolean isCurrent(File file)
+    {
+        Record record = records.get(file.getName());
+        return record != null && record.matches(file);
+    }
+
+    /**
+     * Index an object that was just written to its file.
+     *
+     * @param file Data file written.
+     * @param t Object written to it.
+     */
+    public synchronized void put(File file, T t)
+    {
+        load();
+        Record record = record(file, t);
+        index(file.getName(), record);
+        append(file.getName(), record);
+    }
+
+    /**
+     * Stop indexing a deleted file.
+     *
+     * @param file Data file deleted.
+     */
+    public synchronized void remove(File file)
+    {
+        load();
+        if (unindex(file.getName()))
+        {
+            append(file.getName(), null);
+        }
+    }
+
+    /**
+     * Load the sidecar if it was not loaded yet, then index every file that changed since it was written.
+     */
+    public synchronized void load()
+    {
+        if (loaded)
+        {
+            return;
+        }
+
+        loaded = true;
+        OperationTimer timer = StorageMetrics.start(metricsName, "read");
+        boolean complete = readSidecar();
+        int reindexed = verify();
+        if (!complete || reindexed > 0 || appended > 0)
+        {
+            compact();
+        }
+
+        timer.stop();
+    }
+
+    /**
+     * Forget everything and index every file again.
+     */
+    public synchronized void rebuild()
+    {
+        records.clear();
+        for (Map<String, Set<String>> posting : postings)
+        {
+            posting.clear();
+        }
+
+        loaded = true;
+        verify();
+        compact();
+    }
+
+    /**
+     * Read every record of the sidecar in one pass. Later records of the same file win.
+     *
+     * @return True if the sidecar was read to the end and matches the declared indexes.
+     */
+    private boolean readSidecar()
+    {
+        if (!sidecar.exists())
+        {
+            return false;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(sidecar.toPath()))))
+        {
+            if (input.readInt() != VERSION)
+            {
+                return false;
+            }
+
+            int count = input.readInt();
+            List<String> declared = new ArrayList<>(count);
+            for (int index = 0; index < count; index++)
+            {
+                declared.add(input.readUTF());
+            }
+
+            if (!declared.equals(names))
+            {
+                //Indexes changed since it was written, so every file has to be indexed again.
+                return false;
+            }
+
+            while (true)
+            {
+                byte type;
+                try
+                {
+                    type = input.readByte();
+                }
+                catch (EOFException exception)
+                {
+                    return true;
+                }
+
+                String fileName = input.readUTF();
+                if (type == REMOVE)
+                {
+                    unindex(fileName);
+                    appended++;
+                    continue;
+                }
+
+                long modified = input.readLong();
+                long length = input.readLong();
+                String[] values = new String[names.size()];
+                for (int index = 0; index < values.length; index++)
+                {
+                    values[index] = input.readBoolean() ? input.readUTF() : null;
+                }
+
+                if (records.containsKey(fileName))
+                {
+                    appended++;
+                }
+
+                index(fileName, new Record(modified, length, values));
+            }
+        }
+        catch (IOException exception)
+        {
+            //A write cut off by a crash. Whatever it was about is caught by the check against the files.
+            return false;
+        }
+    }
+
+    /**
+     * Index every file that is new or changed since it was recorded and drop records of files that are gone.
+     *
+     * @return Amount of records added, changed or dropped.
+     */
+    private int verify()
+    {
+        File[] files = lister.get();
+        Set<String> present = new HashSet<>();
+        int changed = 0;
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                present.add(file.getName());
+                Record record = records.get(file.getName());
+                if (record != null && record.matches(file))
+                {
+                    continue;
+                }
+
+                T t = read(file);
+                if (t == null)
+                {
+                    unindex(file.getName());
+                }
+                else
+                {
+                    index(file.getName(), record(file, t));
+                }
+
+                changed++;
+            }
+        }
+
+        for (String fileName : new ArrayList<>(records.keySet()))
+        {
+            if (!present.contains(fileName))
+            {
+                unindex(fileName);
+                changed++;
+            }
+        }
+
+        return changed;
+    }
+
+    private T read(File file)
+    {
+        try
+        {
+            return reader.apply(file.getName());
+        }
+        catch (RuntimeException exception)
+        {
+            //A file that can not be read is simply not indexed.
+            return null;
+        }
+    }
+
+    private Record record(File file, T t)
+    {
+        String[] values = new String[extractors.size()];
+        for (int index = 0; index < values.length; index++)
+        {
+            values[index] = extractors.get(index).apply(t);
+        }
+
+        return new Record(file.lastModified(), file.length(), values);
+    }
+
+    private void index(String fileName, Record record)
+    {
+        unindex(fileName);
+        records.put(fileName, record);
+        for (int index = 0; index < record.values.length; index++)
+        {
+            String value = record.values[index];
+            if (value != null)
+            {
+                postings.get(index).computeIfAbsent(value, (key) -> new HashSet<>()).add(fileName);
+            }
+        }
+    }
+
+    private boolean unindex(String fileName)
+    {
+        Record previous = records.remove(fileName);
+        if (previous == null)
+        {
+            return false;
+        }
+
+        for (int index = 0; index < previous.values.length; index++)
+        {
+            String value = previous.values[index];
+            if (value == null)
+            {
+                continue;
+            }
+
+            Set<String> fileNames = postings.get(index).get(value);
+            if (fileNames != null)
+            {
+                fileNames.remove(fileName);
+                if (fileNames.isEmpty())
+                {
+                    postings.get(index).remove(value);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Append a change to the sidecar, rewriting it whole once it holds more changes than files.
+     */
+    private void append(String fileName, Record record)
+    {
+        if (++appended > Math.max(MIN_COMPACT, records.size()) || !sidecar.exists())
+        {
+            compact();
+            return;
+        }
+
+        OperationTimer timer = StorageMetrics.start(metricsName, "write");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(sidecar, true))))
+        {
+            writeRecord(output, fileName, record);
+        }
+        catch (IOException exception)
+        {
+            timer.fail();
+            exception.printStackTrace();
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Rewrite the sidecar with only the current record of every file.
+     */
+    private void compact()
+    {
+        OperationTimer timer = StorageMetrics.start(metricsName, "compact");
+        File temporary = new File(sidecar.getPath() + ".tmp");
+        try
+        {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temporary.toPath()))))
+            {
+                output.writeInt(VERSION);
+                output.writeInt(names.size());
+                for (String name : names)
+                {
+                    output.writeUTF(name);
+                }
+
+                for (Map.Entry<String, Record> record : records.entrySet())
+                {
+                    writeRecord(output, record.getKey(), record.getValue());
+                }
+            }
+
+            FileSnapshots.replace(temporary, sidecar);
+            appended = 0;
+        }
+        catch (IOException exception)
+        {
+            timer.fail();
+            exception.printStackTrace();
+            temporary.delete();
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    private static void writeRecord(DataOutputStream output, String fileName, Record record) throws IOException
+    {
+        output.writeByte(record == null ? REMOVE : PUT);
+        output.writeUTF(fileName);
+        if (record == null)
+        {
+            return;
+        }
+
+        output.writeLong(record.modified);
+        output.writeLong(record.length);
+        for (String value : record.values)
+        {
+            output.writeBoolean(value != null);
+            if (value != null)
+            {
+                output.writeUTF(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.rfsmassacre.heavenlibrary.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * File operations shared by the managers so their files can be snapshot while they are in use.
+ */
+final class FileSnapshots
+{
+    private FileSnapshots()
+    {
+        //Do nothing. Utility class.
+    }
+
+    /**
+     * Replace a file with a fully written temporary file in one step. A file is never seen half written, so hard links
+     * taken of it earlier keep pointing at the old contents.
+     *
+     * @param temporary Fully written file.
+     * @param file File to replace.
+     * @throws IOException Expected to throw if the file can not be moved.
+     */
+    static void replace(File temporary, File file) throws IOException
+    {
+        try
+        {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException exception)
+        {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Create an empty temporary file next to a file to write its new contents in. Every write gets a file of its own,
+     * so writes of the same file at the same time never mix their bytes.
+     *
+     * @param file File that will be replaced.
+     * @return Temporary file in the same folder.
+     * @throws IOException Expected to throw if the file can not be created.
+     */
+    static File temporary(File file) throws IOException
+    {
+        File folder = file.getAbsoluteFile().getParentFile();
+        return Files.createTempFile(folder.toPath(), file.getName() + ".", ".tmp").toFile();
+    }
+
+    /**
+     * Hard link a file into a folder, or copy it if the file system can not link it there.
+     *
+     * @param file File to snapshot.
+     * @param folder Folder to snapshot into.
+     * @throws IOException Expected to throw if the file can neither be linked nor copied.
+     */
+    static void link(File file, File folder) throws IOException
+    {
+        File target = new File(folder, file.getName());
+        try
+        {
+            Files.createLink(target.toPath(), file.toPath());
+        }
+        catch (IOException | UnsupportedOperationException exception)
+        {
+            Files.copy(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
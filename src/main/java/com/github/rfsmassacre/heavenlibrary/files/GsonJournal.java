@@ -0,0 +1,385 @@
+package com.github.rfsmassacre.heavenlibrary.files;
+
+import com.github.rfsmassacre.heavenlibrary.codecs.Codecs;
+import com.github.rfsmassacre.heavenlibrary.metrics.OperationTimer;
+import com.github.rfsmassacre.heavenlibrary.metrics.StorageMetrics;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append only journal of objects, so changes can be made durable often without rewriting whole files.
+ *
+ * Every append is one checksummed JSON line. A single writer thread writes whatever was appended at the same time and
+ * syncs it to disk once for the whole group. The journal is split into segments so it can be rotated before a full
+ * save and the older segments deleted once that save succeeded, while new changes keep going to the new segment.
+ *
+ * @param <T> Class type of object to be journaled.
+ */
+@SuppressWarnings({"unused", "ResultOfMethodCallIgnored"})
+public class GsonJournal<T> implements AutoCloseable
+{
+    private static final String EXTENSION = ".journal";
+    private static final int MAX_GROUP_SIZE = 1024;
+
+    /**
+     * Line waiting to be written.
+     */
+    private static final class Record
+    {
+        private final byte[] line;
+        private final CompletableFuture<Void> future;
+
+        private Record(byte[] line)
+        {
+            this.line = line;
+            this.future = new CompletableFuture<>();
+        }
+    }
+
+    private final File folder;
+    private final Class<T> clazz;
+    private final Gson gson;
+    private final String metricsName;
+    private final BlockingQueue<Record> records;
+    private final Object lock = new Object();
+    private final Thread writer;
+    private volatile boolean running;
+    private FileChannel channel;
+    private long sequence;
+
+    /**
+     * Constructor.
+     *
+     * @param plugin JavaPlugin handling this journal.
+     * @param folderName Name of folder where the segments will be held.
+     * @param clazz Class type of the object being journaled.
+     * @throws IOException Expected to throw if the folder or first segment can not be created.
+     */
+    public GsonJournal(JavaPlugin plugin, String folderName, Class<T> clazz) throws IOException
+    {
+        this.folder = new File(plugin.getDataFolder() + "/" + folderName);
+        folder.mkdirs();
+        this.clazz = clazz;
+        this.gson = Codecs.builder().create();
+        this.metricsName = getClass().getSimpleName() + ":" + folderName;
+        this.records = new LinkedBlockingQueue<>();
+
+        //Never append to an old segment, its tail may have been torn by a crash.
+        long[] segments = getSegments();
+        this.sequence = segments.length == 0 ? 1L : segments[segments.length - 1] + 1L;
+        this.channel = open(sequence);
+        this.running = true;
+        this.writer = new Thread(this::writeLoop, "Journal-Writer-" + folderName);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Append the current state of an object. The object is serialized right away so it may change afterwards.
+     *
+     * @param key Key the object is replayed under. Later appends with the same key win.
+     * @param t Object to journal.
+     * @return Future completed once the record is synced to disk.
+     */
+    public CompletableFuture<Void> append(String key, T t)
+    {
+        JsonObject object = new JsonObject();
+        object.addProperty("key", key);
+        object.add("value", gson.toJsonTree(t));
+        String json = object.toString();
+
+        CRC32 crc = new CRC32();
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        crc.update(bytes, 0, bytes.length);
+        Record record = new Record((Long.toHexString(crc.getValue()) + " " + json + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        if (!running)
+        {
+            record.future.completeExceptionally(new IOException("Journal is closed."));
+            return record.future;
+        }
+
+        records.add(record);
+        return record.future;
+    }
+
+    /**
+     * Close the current segment and start a new one. Appends from now on go to the new segment.
+     *
+     * @return Sequence of the segment that was closed. Everything up to it can be read or truncated.
+     * @throws IOException Expected to throw if the new segment can not be created.
+     */
+    public long rotate() throws IOException
+    {
+        synchronized (lock)
+        {
+            channel.force(false);
+            channel.close();
+            long closed = sequence;
+            this.sequence = closed + 1L;
+            this.channel = open(sequence);
+            return closed;
+        }
+    }
+
+    /**
+     * Read the latest state of every key in the segments up to the given one. Reading a segment stops at the first
+     * damaged record, which can only be the tail of a write that was cut off.
+     *
+     * @param upTo Sequence of the last segment to read.
+     * @return Latest object of every key in the order they were first seen.
+     */
+    public Map<String, T> read(long upTo)
+    {
+        OperationTimer timer = StorageMetrics.start(metricsName, "read");
+        Map<String, T> latest = new LinkedHashMap<>();
+        for (long segment : getSegments())
+        {
+            if (segment > upTo)
+            {
+                break;
+            }
+
+            try (BufferedReader reader = Files.newBufferedReader(getFile(segment).toPath(), StandardCharsets.UTF_8))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    int space = line.indexOf(' ');
+                    if (space < 0)
+                    {
+                        break;
+                    }
+
+                    String json = line.substring(space + 1);
+                    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+                    CRC32 crc = new CRC32();
+                    crc.update(bytes, 0, bytes.length);
+                    if (!Long.toHexString(crc.getValue()).equals(line.substring(0, space)))
+                    {
+                        break;
+                    }
+
+                    JsonObject object = JsonParser.parseString(json).getAsJsonObject();
+                    latest.put(object.get("key").getAsString(), gson.fromJson(object.get("value"), clazz));
+                }
+            }
+            catch (IOException | RuntimeException exception)
+            {
+                timer.fail();
+                exception.printStackTrace();
+            }
+        }
+
+        timer.stop();
+        return latest;
+    }
+
+    /**
+     * Delete the segments up to the given one. To be used once everything in them is saved elsewhere.
+     *
+     * @param upTo Sequence of the last segment to delete.
+     */
+    public void truncate(long upTo)
+    {
+        OperationTimer timer = StorageMetrics.start(metricsName, "delete");
+        long current;
+        synchronized (lock)
+        {
+            current = sequence;
+        }
+
+        for (long segment : getSegments())
+        {
+            if (segment <= upTo && segment != current && !getFile(segment).delete())
+            {
+                timer.fail();
+            }
+        }
+
+        timer.stop();
+    }
+
+    /**
+     * Hand every object left over from the last run to the task, then delete what was handed over once the task
+     * returns. Nothing is deleted if the task throws.
+     *
+     * @param task Task that saves the recovered objects.
+     * @return Amount of objects recovered.
+     * @throws IOException Expected to throw if the journal can not be rotated.
+     */
+    public int replay(Consumer<Collection<T>> task) throws IOException
+    {
+        long upTo = rotate();
+        Map<String, T> recovered = read(upTo);
+        if (!recovered.isEmpty())
+        {
+            task.accept(recovered.values());
+        }
+
+        truncate(upTo);
+        return recovered.size();
+    }
+
+    /**
+     * Retrieve amount of records waiting to be written.
+     *
+     * @return Pending records.
+     */
+    public int getPending()
+    {
+        return records.size();
+    }
+
+    /**
+     * Write every pending record and close the journal.
+     *
+     * @throws IOException Expected to throw if the segment can not be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        running = false;
+        try
+        {
+            writer.join();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (lock)
+        {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    private void writeLoop()
+    {
+        List<Record> group = new ArrayList<>();
+        while (running || !records.isEmpty())
+        {
+            try
+            {
+                Record first = records.poll(100L, TimeUnit.MILLISECONDS);
+                if (first == null)
+                {
+                    continue;
+                }
+
+                group.add(first);
+                records.drainTo(group, MAX_GROUP_SIZE - 1);
+            }
+            catch (InterruptedException exception)
+            {
+                //Only stop once everything pending is written.
+                continue;
+            }
+
+            OperationTimer timer = StorageMetrics.start(metricsName, "write");
+            try
+            {
+                synchronized (lock)
+                {
+                    for (Record record : group)
+                    {
+                        ByteBuffer buffer = ByteBuffer.wrap(record.line);
+                        while (buffer.hasRemaining())
+                        {
+                            channel.write(buffer);
+                        }
+                    }
+
+                    channel.force(false);
+                }
+
+                for (Record record : group)
+                {
+                    record.future.complete(null);
+                }
+            }
+            catch (IOException exception)
+            {
+                timer.fail();
+                exception.printStackTrace();
+                for (Record record : group)
+                {
+                    record.future.completeExceptionally(exception);
+                }
+            }
+            finally
+            {
+                timer.stop();
+                group.clear();
+            }
+        }
+    }
+
+    private FileChannel open(long segment) throws IOException
+    {
+        return FileChannel.open(getFile(segment).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private File getFile(long segment)
+    {
+        return new File(folder, String.format("%010d", segment) + EXTENSION);
+    }
+
+    private long[] getSegments()
+    {
+        File[] files = folder.listFiles((directory, name) -> name.endsWith(EXTENSION));
+        if (files == null)
+        {
+            return new long[0];
+        }
+
+        List<Long> segments = new ArrayList<>(files.length);
+        for (File file : files)
+        {
+            try
+            {
+                segments.add(Long.parseLong(file.getName().substring(0, file.getName().length() -
+                        EXTENSION.length())));
+            }
+            catch (NumberFormatException exception)
+            {
+                //Not a segment.
+            }
+        }
+
+        long[] sorted = new long[segments.size()];
+        for (int index = 0; index < sorted.length; index++)
+        {
+            sorted[index] = segments.get(index);
+        }
+
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
@@ -1,18 +1,27 @@
 package com.github.rfsmassacre.heavenlibrary.files;
 
+import com.github.rfsmassacre.heavenlibrary.codecs.Codecs;
+import com.github.rfsmassacre.heavenlibrary.concurrent.StorageExecutor;
 import com.github.rfsmassacre.heavenlibrary.interfaces.FileData;
+import com.github.rfsmassacre.heavenlibrary.metrics.OperationTimer;
+import com.github.rfsmassacre.heavenlibrary.metrics.StorageMetrics;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import org.bukkit.Bukkit;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Handles storing and reading data via Gson.
@@ -22,9 +31,16 @@ import java.util.function.Consumer;
 @SuppressWarnings({"unused", "ResultOfMethodCallIgnored"})
 public abstract class GsonManager<T> implements FileData<T>
 {
+    //Gson is thread safe, and classes with a generated codec are converted without reflection.
+    private static final Gson GSON = Codecs.builder().create();
+    private static final Gson PRETTY_GSON = Codecs.builder().setPrettyPrinting().create();
+
     protected final JavaPlugin plugin;
     private final File folder;
     private final Class<T> clazz;
+    private final String metricsName;
+    private final ReadWriteLock fence;
+    private FileIndex<T> index;
 
     /**
      * Constructor.
@@ -39,6 +55,8 @@ public abstract class GsonManager<T> implements FileData<T>
         this.folder = new File(plugin.getDataFolder() + "/" + folderName);
         folder.mkdir();
         this.clazz = clazz;
+        this.metricsName = getClass().getSimpleName() + ":" + folderName;
+        this.fence = new ReentrantReadWriteLock();
     }
 
     /**
@@ -52,22 +70,54 @@ public abstract class GsonManager<T> implements FileData<T>
     @Override
     public T read(String fileName)
     {
-        File file = getFile(fileName);
-
         try
         {
-            if (file.exists())
-            {
-                BufferedReader reader = Files.newBufferedReader(file.toPath());
-                return new Gson().fromJson(reader, clazz);
-            }
+            return readStrict(fileName);
         }
         catch (IOException exception)
         {
             exception.printStackTrace();
+            return null;
         }
+    }
+
+    /**
+     * Read object from file, telling a missing file apart from one that can not be read.
+     *
+     * @param fileName Name of file.
+     * @return Object from file or null if the file does not exist.
+     * @throws IOException Expected to throw if the file exists but can not be read or holds no object.
+     */
+    public T readStrict(String fileName) throws IOException
+    {
+        OperationTimer timer = StorageMetrics.start(metricsName, "read");
+        File file = getFile(fileName);
+        if (!file.exists())
+        {
+            timer.stop();
+            return null;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath()))
+        {
+            T t = GSON.fromJson(reader, clazz);
+            if (t == null)
+            {
+                throw new IOException(file + " is empty.");
+            }
 
-        return null;
+            return t;
+        }
+        catch (IOException | RuntimeException exception)
+        {
+            timer.fail();
+            throw exception instanceof IOException ? (IOException) exception : new IOException("Could not read " +
+                    file, exception);
+        }
+        finally
+        {
+            timer.stop();
+        }
     }
 
     /**
@@ -80,7 +130,82 @@ public abstract class GsonManager<T> implements FileData<T>
      */
     public void read(String fileName, Consumer<T> task)
     {
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> task.accept(read(fileName)));
+        StorageExecutor.of("json").execute(() -> task.accept(read(fileName)));
+    }
+
+    /**
+     * Read only a few fields of a file without deserializing the rest of it.
+     *
+     * @param fileName Name of file.
+     * @param projection Fields to read.
+     * @return Values in the order of the projection's paths, or null if the file does not exist or can not be read.
+     */
+    public Object[] project(String fileName, JsonProjection projection)
+    {
+        OperationTimer timer = StorageMetrics.start(metricsName, "project");
+        try
+        {
+            return project(getFile(fileName), projection);
+        }
+        catch (IOException | RuntimeException exception)
+        {
+            timer.fail();
+            exception.printStackTrace();
+            return null;
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Read only a few fields of every file in the folder, one file at a time.
+     *
+     * @param projection Fields to read.
+     * @param task Task that accepts the name of each file and its values in the order of the projection's paths.
+     *             Files that can not be read are skipped.
+     */
+    public void projectAll(JsonProjection projection, BiConsumer<String, Object[]> task)
+    {
+        File[] files = getFiles();
+        if (files == null)
+        {
+            return;
+        }
+
+        OperationTimer timer = StorageMetrics.start(metricsName, "project");
+        for (File file : files)
+        {
+            try
+            {
+                Object[] values = project(file, projection);
+                if (values != null)
+                {
+                    task.accept(file.getName(), values);
+                }
+            }
+            catch (IOException | RuntimeException exception)
+            {
+                timer.fail();
+                exception.printStackTrace();
+            }
+        }
+
+        timer.stop();
+    }
+
+    private Object[] project(File file, JsonProjection projection) throws IOException
+    {
+        if (!file.exists())
+        {
+            return null;
+        }
+
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(file.toPath())))
+        {
+            return projection.read(reader);
+        }
     }
 
     /**
@@ -92,10 +217,9 @@ public abstract class GsonManager<T> implements FileData<T>
     @Override
     public void copy(String fileName, boolean overwrite)
     {
-        InputStream stream = plugin.getResource(fileName);
-        InputStreamReader reader = new InputStreamReader(Objects.requireNonNull(stream));
-        Gson gson = new Gson();
-        T t = gson.fromJson(reader, clazz);
+        OperationTimer timer = StorageMetrics.start(metricsName, "copy");
+        JsonElement tree = Objects.requireNonNull(ResourceIndex.of(plugin).getJson(fileName));
+        T t = GSON.fromJson(tree, clazz);
 
         try
         {
@@ -107,14 +231,19 @@ public abstract class GsonManager<T> implements FileData<T>
 
             file.createNewFile();
             FileWriter writer = new FileWriter(file);
-            gson.toJson(t, writer);
+            GSON.toJson(t, writer);
             writer.flush();
             writer.close();
         }
         catch (IOException exception)
         {
+            timer.fail();
             exception.printStackTrace();
         }
+        finally
+        {
+            timer.stop();
+        }
     }
 
     /**
@@ -128,7 +257,7 @@ public abstract class GsonManager<T> implements FileData<T>
     {
         if (async)
         {
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> copy(fileName, overwrite));
+            StorageExecutor.of("json").execute(() -> copy(fileName, overwrite));
         }
         else
         {
@@ -140,6 +269,7 @@ public abstract class GsonManager<T> implements FileData<T>
      * Write object to file.
      *
      * Please note that all objects inside objects have to be serializable or else you will get an exception on writing.
+     * The file is written next to the old one first and then replaces it, so it is never seen half written.
      *
      * @param fileName Name of file.
      * @param t Data or object to be updated into file.
@@ -147,24 +277,59 @@ public abstract class GsonManager<T> implements FileData<T>
     @Override
     public void write(String fileName, T t)
     {
+        try
+        {
+            writeStrict(fileName, t);
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * Write object to file, telling the caller when it could not be written.
+     *
+     * @param fileName Name of file.
+     * @param t Data or object to be updated into file.
+     * @throws IOException Expected to throw if the file could not be written. The old file is left as it was.
+     */
+    public void writeStrict(String fileName, T t) throws IOException
+    {
+        OperationTimer timer = StorageMetrics.start(metricsName, "write");
         File file = getFile(fileName);
+        File temporary = null;
 
+        fence.readLock().lock();
         try
         {
-            if (!file.exists())
+            temporary = FileSnapshots.temporary(file);
+            try (FileWriter writer = new FileWriter(temporary))
             {
-                file.createNewFile();
+                PRETTY_GSON.toJson(t, writer);
             }
 
-            FileWriter writer = new FileWriter(file);
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            gson.toJson(t, writer);
-            writer.flush();
-            writer.close();
+            FileSnapshots.replace(temporary, file);
+            if (index != null)
+            {
+                index.put(file, t);
+            }
         }
         catch (IOException exception)
         {
-            exception.printStackTrace();
+            timer.fail();
+            throw exception;
+        }
+        finally
+        {
+            fence.readLock().unlock();
+            if (temporary != null)
+            {
+                //Only left behind if the write failed.
+                temporary.delete();
+            }
+
+            timer.stop();
         }
     }
 
@@ -181,7 +346,7 @@ public abstract class GsonManager<T> implements FileData<T>
     {
         if (async)
         {
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> write(fileName, t));
+            StorageExecutor.of("json").execute(() -> write(fileName, t));
         }
         else
         {
@@ -197,13 +362,108 @@ public abstract class GsonManager<T> implements FileData<T>
     @Override
     public void delete(String fileName)
     {
+        OperationTimer timer = StorageMetrics.start(metricsName, "delete");
         File file = getFile(fileName);
-        if (file.exists())
+        fence.readLock().lock();
+        try
         {
-            file.delete();
+            if (file.exists() && !file.delete())
+            {
+                timer.fail();
+            }
+            else if (index != null)
+            {
+                index.remove(file);
+            }
+        }
+        finally
+        {
+            fence.readLock().unlock();
+            timer.stop();
         }
     }
 
+    /**
+     * Hard link every file into a folder, or copy them where linking is not possible. Writes and deletes wait while
+     * the links are made, which only takes a moment since no data is copied. Files are replaced rather than changed
+     * in place, so the links keep the contents they had at this point.
+     *
+     * @param target Folder to snapshot into. Created if needed.
+     * @throws IOException Expected to throw if a file can not be linked or copied.
+     */
+    public void snapshot(File target) throws IOException
+    {
+        OperationTimer timer = StorageMetrics.start(metricsName, "snapshot");
+        target.mkdirs();
+        fence.writeLock().lock();
+        try
+        {
+            File[] files = getFiles();
+            if (files != null)
+            {
+                for (File file : files)
+                {
+                    FileSnapshots.link(file, target);
+                }
+            }
+        }
+        catch (IOException exception)
+        {
+            timer.fail();
+            throw exception;
+        }
+        finally
+        {
+            fence.writeLock().unlock();
+            timer.stop();
+        }
+    }
+
+    /**
+     * Declare a secondary index on a field, kept in a .json.index sidecar file in the folder. The name is told apart by
+     * extension, so other stores sharing the folder keep sidecars of their own. To be called from the constructor of
+     * the subclass, before anything is read or written.
+     *
+     * @param name Name of index.
+     * @param extractor Extracts the indexed value of an object, which may be null.
+     */
+    protected void addIndex(String name, Function<T, String> extractor)
+    {
+        if (index == null)
+        {
+            this.index = new FileIndex<>(new File(folder, ".json.index"), this::getFiles, this::read);
+        }
+
+        index.declare(name, extractor);
+    }
+
+    /**
+     * Retrieve the secondary indexes of this folder.
+     *
+     * @return Indexes or null if none were declared.
+     */
+    public FileIndex<T> getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Read every object with a value in a secondary index. Only the matching files are read.
+     *
+     * @param indexName Name of index.
+     * @param value Value to look for.
+     * @return Objects with the value.
+     */
+    public List<T> find(String indexName, String value)
+    {
+        if (index == null)
+        {
+            throw new IllegalStateException("No indexes declared for " + folder.getName() + ".");
+        }
+
+        return index.lookup(indexName, value);
+    }
+
     /**
      * Retrieve file object from file name.
      *
@@ -216,6 +476,16 @@ public abstract class GsonManager<T> implements FileData<T>
         return new File(folder.getPath() + "/" + fileName + (fileName.endsWith(".json") ? "" : ".json"));
     }
 
+    /**
+     * Retrieve all files in folder.
+     *
+     * @return All files or null if the folder does not exist.
+     */
+    public File[] getFiles()
+    {
+        return folder.listFiles((directory, name) -> name.endsWith(".json"));
+    }
+
     /**
      * Return all objects.
      *
@@ -223,7 +493,7 @@ public abstract class GsonManager<T> implements FileData<T>
      */
     public Set<T> all()
     {
-        File[] files = folder.listFiles();
+        File[] files = getFiles();
         if (files == null)
         {
             return Collections.emptySet();
@@ -0,0 +1,181 @@
+package com.github.rfsmassacre.heavenlibrary.files;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A few fields picked out of JSON documents without deserializing the rest.
+ *
+ * Paths are dotted names of object fields, such as "race" or "stats.level". Documents are streamed and everything
+ * outside the paths is skipped without building any objects. Reading stops as soon as every path was found. Strings
+ * and booleans come back as they are, numbers as Long or Double, and anything else at a path as a JsonElement.
+ * Paths missing from a document come back as null.
+ *
+ * Build a projection once and reuse it, it holds no state between reads. Paths may not overlap, so to read a field
+ * and something inside it, read the field and look inside the JsonElement.
+ */
+@SuppressWarnings("unused")
+public class JsonProjection
+{
+    /**
+     * One level of the requested paths.
+     */
+    private static final class Node
+    {
+        private final Map<String, Node> children = new HashMap<>();
+        private int slot = -1;
+    }
+
+    private final List<String> paths;
+    private final Node root;
+
+    /**
+     * Constructor.
+     *
+     * @param paths Dotted paths of the fields to read. No path may be repeated or lead into another, such as "stats"
+     *              and "stats.level", since reading stops at the first of them.
+     * @throws IllegalArgumentException If paths overlap.
+     */
+    public JsonProjection(String... paths)
+    {
+        this.paths = Collections.unmodifiableList(Arrays.asList(paths.clone()));
+        this.root = new Node();
+        for (int slot = 0; slot < paths.length; slot++)
+        {
+            Node node = root;
+            for (String name : paths[slot].split("\\."))
+            {
+                if (node.slot >= 0)
+                {
+                    throw new IllegalArgumentException("Path " + paths[slot] + " is inside " + paths[node.slot] +
+                            ".");
+                }
+
+                node = node.children.computeIfAbsent(name, (key) -> new Node());
+            }
+
+            if (node.slot >= 0 || !node.children.isEmpty())
+            {
+                throw new IllegalArgumentException("Path " + paths[slot] + " overlaps another path.");
+            }
+
+            node.slot = slot;
+        }
+    }
+
+    /**
+     * Retrieve the paths read, in the order their values are returned.
+     *
+     * @return Paths.
+     */
+    public List<String> getPaths()
+    {
+        return paths;
+    }
+
+    /**
+     * Retrieve where the value of a path is in the returned values.
+     *
+     * @param path Dotted path.
+     * @return Index of its value, or -1 if it is not part of this projection.
+     */
+    public int indexOf(String path)
+    {
+        return paths.indexOf(path);
+    }
+
+    /**
+     * Read the values of every path from a document.
+     *
+     * @param reader Reader positioned at the start of the document. Not closed.
+     * @return Values in the order of the paths.
+     * @throws IOException Expected to throw if the document can not be read or is not valid JSON.
+     */
+    public Object[] read(JsonReader reader) throws IOException
+    {
+        Object[] values = new Object[paths.size()];
+        if (values.length > 0 && reader.peek() != JsonToken.END_DOCUMENT)
+        {
+            read(reader, root, values, new int[]{values.length});
+        }
+
+        return values;
+    }
+
+    /**
+     * Read the value at a node, descending only into fields that lead to a path.
+     *
+     * @return False once every path was found and reading can stop.
+     */
+    private boolean read(JsonReader reader, Node node, Object[] values, int[] remaining) throws IOException
+    {
+        if (node.slot >= 0)
+        {
+            values[node.slot] = value(reader);
+            return --remaining[0] > 0;
+        }
+
+        if (reader.peek() != JsonToken.BEGIN_OBJECT)
+        {
+            reader.skipValue();
+            return true;
+        }
+
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            Node child = node.children.get(reader.nextName());
+            if (child == null)
+            {
+                reader.skipValue();
+            }
+            else if (!read(reader, child, values, remaining))
+            {
+                //Everything was found, so the rest of the document is never looked at.
+                return false;
+            }
+        }
+
+        reader.endObject();
+        return true;
+    }
+
+    private static Object value(JsonReader reader) throws IOException
+    {
+        switch (reader.peek())
+        {
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                String number = reader.nextString();
+                if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0)
+                {
+                    try
+                    {
+                        return Long.parseLong(number);
+                    }
+                    catch (NumberFormatException exception)
+                    {
+                        //Too large for a long.
+                    }
+                }
+
+                return Double.parseDouble(number);
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                return JsonParser.parseReader(reader);
+        }
+    }
+}
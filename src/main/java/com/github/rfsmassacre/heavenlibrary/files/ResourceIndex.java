@@ -0,0 +1,347 @@
+package com.github.rfsmassacre.heavenlibrary.files;
+
+import com.github.rfsmassacre.heavenlibrary.metrics.OperationTimer;
+import com.github.rfsmassacre.heavenlibrary.metrics.StorageMetrics;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Defaults bundled in a plugin's jar, read once and shared by every manager of that plugin.
+ *
+ * The jar is scanned a single time and every resource that is not a class is kept in memory. Parsed YAML and JSON
+ * trees are cached as well, so managers asking for the same default share one tree instead of each opening and
+ * parsing the resource again. When the plugin does not run from a jar, resources are looked up one by one and cached
+ * the same way.
+ */
+@SuppressWarnings("unused")
+public class ResourceIndex
+{
+    private static final Map<JavaPlugin, ResourceIndex> INDEXES = new WeakHashMap<>();
+
+    /**
+     * Retrieve the index of a plugin, scanning its jar the first time.
+     *
+     * @param plugin JavaPlugin whose jar holds the resources.
+     * @return Shared index of the plugin.
+     */
+    public static ResourceIndex of(JavaPlugin plugin)
+    {
+        synchronized (INDEXES)
+        {
+            ResourceIndex index = INDEXES.get(plugin);
+            if (index == null)
+            {
+                index = new ResourceIndex(plugin);
+                INDEXES.put(plugin, index);
+            }
+
+            return index;
+        }
+    }
+
+    private final JavaPlugin plugin;
+    private final boolean indexed;
+    private final Map<String, Optional<byte[]>> resources;
+    private final Map<String, YamlConfiguration> yamls;
+    private final Map<String, JsonElement> jsons;
+
+    private ResourceIndex(JavaPlugin plugin)
+    {
+        this.plugin = plugin;
+        this.resources = new ConcurrentHashMap<>();
+        this.yamls = new ConcurrentHashMap<>();
+        this.jsons = new ConcurrentHashMap<>();
+        this.indexed = scan();
+    }
+
+    /**
+     * Check whether the jar holds a resource.
+     *
+     * @param name Path of resource inside the jar.
+     * @return True if it exists.
+     */
+    public boolean contains(String name)
+    {
+        return getBytes(name) != null;
+    }
+
+    /**
+     * Retrieve the names of every resource inside a folder of the jar, including those in sub folders. Only known
+     * when the plugin runs from a jar.
+     *
+     * @param folderName Name of folder inside the jar.
+     * @return Names of resources in the folder.
+     */
+    public Set<String> list(String folderName)
+    {
+        String prefix = folderName.isEmpty() || folderName.endsWith("/") ? folderName : folderName + "/";
+        Set<String> names = new TreeSet<>();
+        for (Map.Entry<String, Optional<byte[]>> entry : resources.entrySet())
+        {
+            if (entry.getKey().startsWith(prefix) && entry.getValue().isPresent())
+            {
+                names.add(entry.getKey());
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Open a resource.
+     *
+     * @param name Path of resource inside the jar.
+     * @return Stream over the resource, or null if it does not exist.
+     */
+    public InputStream open(String name)
+    {
+        byte[] bytes = getBytes(name);
+        return bytes == null ? null : new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * Retrieve the lines of a text resource.
+     *
+     * @param name Path of resource inside the jar.
+     * @return Lines of the resource, or null if it does not exist.
+     */
+    public List<String> getLines(String name)
+    {
+        byte[] bytes = getBytes(name);
+        if (bytes == null)
+        {
+            return null;
+        }
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(new String(bytes, StandardCharsets.UTF_8))))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                lines.add(line);
+            }
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace();
+        }
+
+        return lines;
+    }
+
+    /**
+     * Retrieve the shared parsed tree of a YAML resource. It is shared with every other caller and must not be
+     * changed, use loadYaml for a tree of your own.
+     *
+     * @param name Path of resource inside the jar.
+     * @return Shared tree, or null if the resource does not exist.
+     */
+    public YamlConfiguration getYaml(String name)
+    {
+        YamlConfiguration yaml = yamls.get(name);
+        if (yaml == null)
+        {
+            yaml = loadYaml(name);
+            if (yaml != null)
+            {
+                YamlConfiguration previous = yamls.putIfAbsent(name, yaml);
+                yaml = previous != null ? previous : yaml;
+            }
+        }
+
+        return yaml;
+    }
+
+    /**
+     * Parse a new tree of a YAML resource, which the caller is free to change.
+     *
+     * @param name Path of resource inside the jar.
+     * @return New tree, or null if the resource does not exist.
+     */
+    public YamlConfiguration loadYaml(String name)
+    {
+        InputStream stream = open(name);
+        if (stream == null)
+        {
+            return null;
+        }
+
+        return YamlConfiguration.loadConfiguration(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Retrieve the shared parsed tree of a JSON resource. It is shared with every other caller and must not be
+     * changed, use deepCopy on it for a tree of your own.
+     *
+     * @param name Path of resource inside the jar.
+     * @return Shared tree, or null if the resource does not exist.
+     */
+    public JsonElement getJson(String name)
+    {
+        JsonElement json = jsons.get(name);
+        if (json == null)
+        {
+            byte[] bytes = getBytes(name);
+            if (bytes == null)
+            {
+                return null;
+            }
+
+            json = JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8));
+            JsonElement previous = jsons.putIfAbsent(name, json);
+            json = previous != null ? previous : json;
+        }
+
+        return json;
+    }
+
+    /**
+     * Drop every parsed tree so they are parsed again on next use.
+     */
+    public void clearTrees()
+    {
+        yamls.clear();
+        jsons.clear();
+    }
+
+    private byte[] getBytes(String name)
+    {
+        Optional<byte[]> bytes = resources.get(name);
+        if (bytes == null)
+        {
+            if (indexed)
+            {
+                //Everything in the jar is already known.
+                return null;
+            }
+
+            bytes = resources.computeIfAbsent(name, (key) ->
+            {
+                InputStream stream = plugin.getResource(key);
+                if (stream == null)
+                {
+                    return Optional.empty();
+                }
+
+                try (InputStream input = stream)
+                {
+                    return Optional.of(readAll(input));
+                }
+                catch (IOException exception)
+                {
+                    exception.printStackTrace();
+                    return Optional.empty();
+                }
+            });
+        }
+
+        return bytes.orElse(null);
+    }
+
+    /**
+     * Keep every resource of the jar in memory.
+     *
+     * @return True if the plugin runs from a jar that was scanned.
+     */
+    private boolean scan()
+    {
+        File jar = getJar();
+        if (jar == null)
+        {
+            return false;
+        }
+
+        OperationTimer timer = StorageMetrics.start(getClass().getSimpleName() + ":" + jar.getName(), "read");
+        try (JarFile file = new JarFile(jar))
+        {
+            Enumeration<JarEntry> entries = file.entries();
+            while (entries.hasMoreElements())
+            {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || name.endsWith(".class") || name.startsWith("META-INF/"))
+                {
+                    continue;
+                }
+
+                try (InputStream input = file.getInputStream(entry))
+                {
+                    resources.put(name, Optional.of(readAll(input)));
+                }
+            }
+
+            return true;
+        }
+        catch (IOException exception)
+        {
+            timer.fail();
+            exception.printStackTrace();
+            resources.clear();
+            return false;
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    private File getJar()
+    {
+        try
+        {
+            CodeSource source = plugin.getClass().getProtectionDomain().getCodeSource();
+            URL location = source == null ? null : source.getLocation();
+            if (location == null)
+            {
+                return null;
+            }
+
+            File file = new File(location.toURI());
+            return file.isFile() ? file : null;
+        }
+        catch (URISyntaxException | IllegalArgumentException | SecurityException exception)
+        {
+            return null;
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = input.read(buffer)) > 0)
+        {
+            output.write(buffer, 0, length);
+        }
+
+        return output.toByteArray();
+    }
+}
@@ -1,12 +1,15 @@
 package com.github.rfsmassacre.heavenlibrary.files;
 
+import com.github.rfsmassacre.heavenlibrary.metrics.OperationTimer;
+import com.github.rfsmassacre.heavenlibrary.metrics.StorageMetrics;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles storing and reading text via TXT files.
@@ -15,8 +18,10 @@ import java.util.List;
 public class TextManager
 {
     private final JavaPlugin plugin;
-    private final HashMap<String, List<String>> textCache;
+    private final Map<String, List<String>> textCache;
     private final String folderName;
+    private final ResourceIndex resources;
+    private final String metricsName;
 
     /**
      * Constructor.
@@ -27,8 +32,10 @@ public class TextManager
     public TextManager(JavaPlugin plugin, String folderName)
     {
         this.plugin = plugin;
-        this.textCache = new HashMap<>();
+        this.textCache = new ConcurrentHashMap<>();
         this.folderName = folderName;
+        this.resources = ResourceIndex.of(plugin);
+        this.metricsName = getClass().getSimpleName() + ":" + folderName;
 
         //Create folder if needed
         File folder = new File(plugin.getDataFolder() + "/" + folderName);
@@ -55,6 +62,17 @@ public class TextManager
         return textCache.get(fullName);
     }
 
+    /**
+     * Cache every text file bundled in the folder of the jar at once, reading them in parallel.
+     */
+    public void preload()
+    {
+        String prefix = folderName + "/";
+        resources.list(folderName).parallelStream()
+                .filter((name) -> name.endsWith(".txt"))
+                .forEach((name) -> cacheTextFile(name.substring(prefix.length())));
+    }
+
     /**
      * Clear cache of texts.
      */
@@ -70,19 +88,35 @@ public class TextManager
     public void cacheTextFile(String fileName)
     {
         String fullName = folderName + "/" + fileName;
+        OperationTimer timer = StorageMetrics.start(metricsName, "read");
         try
         {
             File file = new File(plugin.getDataFolder() + "/" + fullName);
             if (!file.exists())
             {
+                //A new file is the bundled default, so its lines are taken from the index instead of read back.
+                file.getParentFile().mkdirs();
+                List<String> lines = resources.getLines(fullName);
+                if (lines != null)
+                {
+                    Files.write(file.toPath(), lines);
+                    textCache.put(fullName, lines);
+                    return;
+                }
+
                 file.createNewFile();
-                plugin.saveResource(folderName + "/" + fileName, true);
             }
+
             textCache.put(fullName, Files.readAllLines(file.toPath()));
         }
         catch (IOException exception)
         {
+            timer.fail();
             exception.printStackTrace();
         }
+        finally
+        {
+            timer.stop();
+        }
     }
 }
@@ -1,14 +1,14 @@
 package com.github.rfsmassacre.heavenlibrary.files;
 
+import com.github.rfsmassacre.heavenlibrary.concurrent.StorageExecutor;
 import com.github.rfsmassacre.heavenlibrary.interfaces.FileData;
-import org.bukkit.Bukkit;
+import com.github.rfsmassacre.heavenlibrary.metrics.OperationTimer;
+import com.github.rfsmassacre.heavenlibrary.metrics.StorageMetrics;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.function.Consumer;
 
 /**
@@ -22,6 +22,8 @@ public abstract class YamlManager implements FileData<YamlConfiguration>
     protected String folderName;
     protected YamlConfiguration yaml;
     protected YamlConfiguration defaultYaml;
+    protected final ResourceIndex resources;
+    private final String metricsName;
 
     /**
      * Constructor for YamlManager.
@@ -34,21 +36,25 @@ public abstract class YamlManager implements FileData<YamlConfiguration>
         this.plugin = plugin;
         this.folderName = folderName;
         this.folder = new File(plugin.getDataFolder().getPath() + "/" + folderName);
-        this.yaml = read(fileName);
-
-        InputStream stream = plugin.getResource(fileName);
-        if (stream != null)
+        this.metricsName = getClass().getSimpleName() + ":" + fileName;
+        this.resources = ResourceIndex.of(plugin);
+        this.defaultYaml = resources.getYaml(fileName);
+        if (defaultYaml == null)
         {
-            InputStreamReader reader = new InputStreamReader(stream);
-            this.defaultYaml = YamlConfiguration.loadConfiguration(reader);
+            this.defaultYaml = new YamlConfiguration();
         }
 
-        if (!getFile(fileName).exists())
+        //A missing file starts out as its own copy of the defaults instead of being written and read back.
+        if (getFile(fileName).exists())
         {
-            write(fileName, defaultYaml);
+            this.yaml = read(fileName);
+        }
+        else
+        {
+            YamlConfiguration copy = resources.loadYaml(fileName);
+            this.yaml = copy != null ? copy : new YamlConfiguration();
+            write(fileName, yaml);
         }
-
-        this.yaml = read(fileName);
     }
 
     /**
@@ -59,7 +65,15 @@ public abstract class YamlManager implements FileData<YamlConfiguration>
     @Override
     public YamlConfiguration read(String fileName)
     {
-        return YamlConfiguration.loadConfiguration(getFile(fileName));
+        OperationTimer timer = StorageMetrics.start(metricsName, "read");
+        try
+        {
+            return YamlConfiguration.loadConfiguration(getFile(fileName));
+        }
+        finally
+        {
+            timer.stop();
+        }
     }
 
     /**
@@ -69,7 +83,7 @@ public abstract class YamlManager implements FileData<YamlConfiguration>
      */
     public void read(String fileName, Consumer<YamlConfiguration> task)
     {
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> task.accept(read(fileName)));
+        StorageExecutor.of("yaml").execute(() -> task.accept(read(fileName)));
     }
 
     /**
@@ -80,11 +94,10 @@ public abstract class YamlManager implements FileData<YamlConfiguration>
     @Override
     public void copy(String fileName, boolean overwrite)
     {
-        InputStream stream = plugin.getResource(fileName);
-        if (stream != null)
+        OperationTimer timer = StorageMetrics.start(metricsName, "copy");
+        YamlConfiguration configuration = resources.getYaml(fileName);
+        if (configuration != null)
         {
-            InputStreamReader reader = new InputStreamReader(stream);
-            YamlConfiguration configuration = YamlConfiguration.loadConfiguration(reader);
             File file = getFile(fileName);
             try
             {
@@ -99,9 +112,12 @@ public abstract class YamlManager implements FileData<YamlConfiguration>
             }
             catch (IOException exception)
             {
+                timer.fail();
                 exception.printStackTrace();
             }
         }
+
+        timer.stop();
     }
 
     /**
@@ -114,7 +130,7 @@ public abstract class YamlManager implements FileData<YamlConfiguration>
     {
         if (async)
         {
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> copy(fileName, overwrite));
+            StorageExecutor.of("yaml").execute(() -> copy(fileName, overwrite));
         }
         else
         {
@@ -130,14 +146,20 @@ public abstract class YamlManager implements FileData<YamlConfiguration>
     @Override
     public void write(String fileName, YamlConfiguration configuration)
     {
+        OperationTimer timer = StorageMetrics.start(metricsName, "write");
         try
         {
             configuration.save(getFile(fileName));
         }
         catch (IOException exception)
         {
+            timer.fail();
             exception.printStackTrace();
         }
+        finally
+        {
+            timer.stop();
+        }
     }
 
     /**
@@ -150,7 +172,7 @@ public abstract class YamlManager implements FileData<YamlConfiguration>
     {
         if (async)
         {
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> write(fileName, configuration));
+            StorageExecutor.of("yaml").execute(() -> write(fileName, configuration));
         }
         else
         {
@@ -165,11 +187,14 @@ public abstract class YamlManager implements FileData<YamlConfiguration>
     @Override
     public void delete(String fileName)
     {
+        OperationTimer timer = StorageMetrics.start(metricsName, "delete");
         File file = getFile(fileName);
-        if (file.exists())
+        if (file.exists() && !file.delete())
         {
-            file.delete();
+            timer.fail();
         }
+
+        timer.stop();
     }
 
     /**
@@ -181,7 +206,7 @@ public abstract class YamlManager implements FileData<YamlConfiguration>
     {
         if (async)
         {
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> delete(fileName));
+            StorageExecutor.of("yaml").execute(() -> delete(fileName));
         }
         else
         {
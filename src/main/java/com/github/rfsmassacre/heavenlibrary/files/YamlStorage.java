@@ -1,14 +1,21 @@
 package com.github.rfsmassacre.heavenlibrary.files;
 
 
+import com.github.rfsmassacre.heavenlibrary.concurrent.StorageExecutor;
 import com.github.rfsmassacre.heavenlibrary.interfaces.FileData;
-import org.bukkit.Bukkit;
+import com.github.rfsmassacre.heavenlibrary.metrics.OperationTimer;
+import com.github.rfsmassacre.heavenlibrary.metrics.StorageMetrics;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 @SuppressWarnings({"unused", "ResultOfMethodCallIgnored"})
 public abstract class YamlStorage<T> implements FileData<T>
@@ -16,6 +23,9 @@ public abstract class YamlStorage<T> implements FileData<T>
     protected JavaPlugin plugin;
     protected File folder;
     protected String folderName;
+    private final String metricsName;
+    private final ReadWriteLock fence;
+    private FileIndex<T> index;
 
     /**
      * Constructor for YamlManager.
@@ -27,6 +37,8 @@ public abstract class YamlStorage<T> implements FileData<T>
         this.plugin = plugin;
         this.folderName = folderName;
         this.folder = new File(plugin.getDataFolder().getPath() + "/" + folderName);
+        this.metricsName = getClass().getSimpleName() + ":" + folderName;
+        this.fence = new ReentrantReadWriteLock();
     }
 
     /**
@@ -37,7 +49,59 @@ public abstract class YamlStorage<T> implements FileData<T>
     @Override
     public T read(String fileName)
     {
-        return load(YamlConfiguration.loadConfiguration(getFile(fileName)));
+        OperationTimer timer = StorageMetrics.start(metricsName, "read");
+        try
+        {
+            return load(YamlConfiguration.loadConfiguration(getFile(fileName)));
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Read from file, telling a missing file apart from one that can not be read.
+     * @param fileName Name of file.
+     * @return Data or object read from the file, or null if the file does not exist.
+     * @throws IOException Expected to throw if the file exists but can not be read or holds no object.
+     */
+    public T readStrict(String fileName) throws IOException
+    {
+        OperationTimer timer = StorageMetrics.start(metricsName, "read");
+        File file = getFile(fileName);
+        if (!file.exists())
+        {
+            timer.stop();
+            return null;
+        }
+
+        try
+        {
+            YamlConfiguration configuration = new YamlConfiguration();
+            configuration.load(file);
+            T t = load(configuration);
+            if (t == null)
+            {
+                throw new IOException(file + " holds no object.");
+            }
+
+            return t;
+        }
+        catch (InvalidConfigurationException | RuntimeException exception)
+        {
+            timer.fail();
+            throw new IOException("Could not read " + file, exception);
+        }
+        catch (IOException exception)
+        {
+            timer.fail();
+            throw exception;
+        }
+        finally
+        {
+            timer.stop();
+        }
     }
 
     /**
@@ -47,7 +111,7 @@ public abstract class YamlStorage<T> implements FileData<T>
      */
     public void read(String fileName, Consumer<T> task)
     {
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> task.accept(read(fileName)));
+        StorageExecutor.of("yaml").execute(() -> task.accept(read(fileName)));
     }
 
     /**
@@ -61,7 +125,7 @@ public abstract class YamlStorage<T> implements FileData<T>
     }
 
     /**
-     * Write data of object into the file.
+     * Write data of object into the file. The file is written next to the old one first and then replaces it.
      * @param fileName Name of file.
      * @param t Generic type.
      */
@@ -70,7 +134,7 @@ public abstract class YamlStorage<T> implements FileData<T>
     {
         try
         {
-            save(t).save(getFile(fileName));
+            writeStrict(fileName, t);
         }
         catch (IOException exception)
         {
@@ -78,6 +142,46 @@ public abstract class YamlStorage<T> implements FileData<T>
         }
     }
 
+    /**
+     * Write data of object into the file, telling the caller when it could not be written.
+     * @param fileName Name of file.
+     * @param t Generic type.
+     * @throws IOException Expected to throw if the file could not be written. The old file is left as it was.
+     */
+    public void writeStrict(String fileName, T t) throws IOException
+    {
+        OperationTimer timer = StorageMetrics.start(metricsName, "write");
+        File file = getFile(fileName);
+        File temporary = null;
+        fence.readLock().lock();
+        try
+        {
+            temporary = FileSnapshots.temporary(file);
+            save(t).save(temporary);
+            FileSnapshots.replace(temporary, file);
+            if (index != null)
+            {
+                index.put(file, t);
+            }
+        }
+        catch (IOException exception)
+        {
+            timer.fail();
+            throw exception;
+        }
+        finally
+        {
+            fence.readLock().unlock();
+            if (temporary != null)
+            {
+                //Only left behind if the write failed.
+                temporary.delete();
+            }
+
+            timer.stop();
+        }
+    }
+
     /**
      * Write data of object into the file asynchronously.
      * @param fileName Name of file.
@@ -88,7 +192,7 @@ public abstract class YamlStorage<T> implements FileData<T>
     {
         if (async)
         {
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> write(fileName, t));
+            StorageExecutor.of("yaml").execute(() -> write(fileName, t));
         }
         else
         {
@@ -103,10 +207,24 @@ public abstract class YamlStorage<T> implements FileData<T>
     @Override
     public void delete(String fileName)
     {
+        OperationTimer timer = StorageMetrics.start(metricsName, "delete");
         File file = getFile(fileName);
-        if (file.exists())
+        fence.readLock().lock();
+        try
+        {
+            if (file.exists() && !file.delete())
+            {
+                timer.fail();
+            }
+            else if (index != null)
+            {
+                index.remove(file);
+            }
+        }
+        finally
         {
-            file.delete();
+            fence.readLock().unlock();
+            timer.stop();
         }
     }
 
@@ -118,7 +236,7 @@ public abstract class YamlStorage<T> implements FileData<T>
     {
         if (async)
         {
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> delete(fileName));
+            StorageExecutor.of("yaml").execute(() -> delete(fileName));
         }
         else
         {
@@ -139,7 +257,83 @@ public abstract class YamlStorage<T> implements FileData<T>
 
     public File[] getFiles()
     {
-        return folder.listFiles();
+        return folder.listFiles((directory, name) -> name.endsWith(".yml"));
+    }
+
+    /**
+     * Declare a secondary index on a field, kept in a .yml.index sidecar file in the folder. The name is told apart by
+     * extension, so other stores sharing the folder keep sidecars of their own. To be called from the constructor of
+     * the subclass, before anything is read or written.
+     * @param name Name of index.
+     * @param extractor Extracts the indexed value of an object, which may be null.
+     */
+    protected void addIndex(String name, Function<T, String> extractor)
+    {
+        if (index == null)
+        {
+            this.index = new FileIndex<>(new File(folder, ".yml.index"), this::getFiles, this::read);
+        }
+
+        index.declare(name, extractor);
+    }
+
+    /**
+     * Retrieve the secondary indexes of this folder.
+     * @return Indexes or null if none were declared.
+     */
+    public FileIndex<T> getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Read every object with a value in a secondary index. Only the matching files are read.
+     * @param indexName Name of index.
+     * @param value Value to look for.
+     * @return Objects with the value.
+     */
+    public List<T> find(String indexName, String value)
+    {
+        if (index == null)
+        {
+            throw new IllegalStateException("No indexes declared for " + folderName + ".");
+        }
+
+        return index.lookup(indexName, value);
+    }
+
+    /**
+     * Hard link every file into a folder, or copy them where linking is not possible. Writes and deletes wait while
+     * the links are made.
+     * @param target Folder to snapshot into. Created if needed.
+     * @throws IOException Expected to throw if a file can not be linked or copied.
+     */
+    public void snapshot(File target) throws IOException
+    {
+        OperationTimer timer = StorageMetrics.start(metricsName, "snapshot");
+        target.mkdirs();
+        fence.writeLock().lock();
+        try
+        {
+            File[] files = getFiles();
+            if (files != null)
+            {
+                for (File file : files)
+                {
+                    FileSnapshots.link(file, target);
+                }
+            }
+        }
+        catch (IOException exception)
+        {
+            timer.fail();
+            throw exception;
+        }
+        finally
+        {
+            fence.writeLock().unlock();
+            timer.stop();
+        }
     }
 
     public abstract T load(YamlConfiguration configuration);
@@ -0,0 +1,300 @@
+package com.github.rfsmassacre.heavenlibrary.files.configs;
+
+import com.github.rfsmassacre.heavenlibrary.files.ResourceIndex;
+import com.github.rfsmassacre.heavenlibrary.metrics.OperationTimer;
+import com.github.rfsmassacre.heavenlibrary.metrics.StorageMetrics;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves locale messages in the language of each player's client.
+ *
+ * Every language is a bundle holding only the messages it translates. Missing messages fall back to the server's
+ * locale file and then to the default inside the jar, both held once by the shared Locale. Bundles are flattened into
+ * interned strings, loaded the first time a message is needed in them, and dropped once nobody online uses them.
+ */
+@SuppressWarnings("unused")
+public class LanguageManager
+{
+    //Cached resolution of a client locale without a bundle.
+    private static final String NONE = "";
+
+    private final ResourceIndex resources;
+    private final String folderName;
+    private final File folder;
+    private final Locale locale;
+    private final Map<String, Map<String, String>> bundles;
+    private final Map<String, String> resolved;
+    private final Map<UUID, String> players;
+    private final String metricsName;
+
+    /**
+     * Constructor.
+     *
+     * @param plugin JavaPlugin handling the languages.
+     * @param folderName Name of folder holding a file for each language, such as de_de.yml.
+     * @param locale Locale every language falls back to.
+     */
+    public LanguageManager(JavaPlugin plugin, String folderName, Locale locale)
+    {
+        this.resources = ResourceIndex.of(plugin);
+        this.folderName = folderName;
+        this.folder = new File(plugin.getDataFolder() + "/" + folderName);
+        folder.mkdirs();
+        this.locale = locale;
+        this.bundles = new ConcurrentHashMap<>();
+        this.resolved = new ConcurrentHashMap<>();
+        this.players = new ConcurrentHashMap<>();
+        this.metricsName = getClass().getSimpleName() + ":" + folderName;
+    }
+
+    /**
+     * Start serving a player in the language of their client.
+     *
+     * @param player Player who joined.
+     */
+    public void addPlayer(Player player)
+    {
+        setLanguage(player.getUniqueId(), player.getLocale());
+    }
+
+    /**
+     * Switch a player over to another client locale, such as when they change it in their settings.
+     *
+     * @param playerId UUID of player.
+     * @param clientLocale Locale reported by their client, such as de_de.
+     */
+    public void setLanguage(UUID playerId, String clientLocale)
+    {
+        String language = resolve(clientLocale);
+        String previous = language == null ? players.remove(playerId) : players.put(playerId, language);
+        if (previous != null && !previous.equals(language))
+        {
+            release(previous);
+        }
+    }
+
+    /**
+     * Stop serving a player, dropping their bundle if nobody else online uses it.
+     *
+     * @param playerId UUID of player who quit.
+     */
+    public void removePlayer(UUID playerId)
+    {
+        String previous = players.remove(playerId);
+        if (previous != null)
+        {
+            release(previous);
+        }
+    }
+
+    /**
+     * Retrieve the language a player is served in.
+     *
+     * @param playerId UUID of player.
+     * @return Language or null if they get the default messages.
+     */
+    public String getLanguage(UUID playerId)
+    {
+        return players.get(playerId);
+    }
+
+    /**
+     * Retrieve the languages currently loaded.
+     *
+     * @return Unmodifiable view of loaded languages.
+     */
+    public Set<String> getLoaded()
+    {
+        return Collections.unmodifiableSet(bundles.keySet());
+    }
+
+    /**
+     * Forget loaded bundles so they are read again on next use.
+     */
+    public void reload()
+    {
+        resolved.clear();
+        bundles.clear();
+    }
+
+    /**
+     * Retrieve message from given key in the language of the receiver.
+     *
+     * @param receiver Player or console receiving the message.
+     * @param key Specified message assigned to.
+     * @return Message from the receiver's bundle, or the default message.
+     */
+    public String getMessage(CommandSender receiver, String key)
+    {
+        Map<String, String> bundle = getBundle(receiver);
+        String message = bundle == null ? null : bundle.get(key);
+        return message != null ? message : locale.getMessage(key);
+    }
+
+    /**
+     * Retrieve message from given key in the language of the receiver.
+     *
+     * @param receiver Player or console receiving the message.
+     * @param key Specified message assigned to.
+     * @param usePrefix Use prefix with message.
+     * @return Message from the receiver's bundle, or the default message.
+     */
+    public String getMessage(CommandSender receiver, String key, boolean usePrefix)
+    {
+        String prefix = getMessage(receiver, "prefix");
+        if (key == null || key.isEmpty())
+        {
+            return usePrefix ? prefix : "";
+        }
+
+        String message = getMessage(receiver, key);
+        if (message.isEmpty())
+        {
+            return "";
+        }
+
+        return usePrefix ? prefix + message : message;
+    }
+
+    /**
+     * Send formatted locale message to receiver in their language.
+     *
+     * @param receiver Player or console receiving message.
+     * @param usePrefix Use prefix with message.
+     * @param key Specified message assigned to.
+     * @param holders Words to be replaced with values.
+     */
+    public void sendLocale(CommandSender receiver, boolean usePrefix, String key, String... holders)
+    {
+        locale.sendMessage(receiver, getMessage(receiver, key, usePrefix), holders);
+    }
+
+    /**
+     * Send formatted locale message to receiver's action bar in their language.
+     *
+     * @param player Player receiving message.
+     * @param usePrefix Use prefix with message.
+     * @param key Specified message assigned to.
+     * @param holders Words to be replaced with values.
+     */
+    public void sendActionLocale(Player player, boolean usePrefix, String key, String... holders)
+    {
+        locale.sendActionMessage(player, getMessage(player, key, usePrefix), holders);
+    }
+
+    private Map<String, String> getBundle(CommandSender receiver)
+    {
+        if (!(receiver instanceof Player))
+        {
+            return null;
+        }
+
+        String language = players.get(((Player) receiver).getUniqueId());
+        return language == null ? null : bundles.computeIfAbsent(language, this::load);
+    }
+
+    /**
+     * Find the bundle for a client locale, trying the full locale first and then only its language.
+     *
+     * @param clientLocale Locale reported by the client, such as pt_br.
+     * @return Language of the bundle or null if there is none.
+     */
+    private String resolve(String clientLocale)
+    {
+        if (clientLocale == null || clientLocale.isEmpty())
+        {
+            return null;
+        }
+
+        String language = resolved.computeIfAbsent(clientLocale.toLowerCase(), (key) ->
+        {
+            if (exists(key))
+            {
+                return key;
+            }
+
+            int separator = key.indexOf('_');
+            if (separator > 0 && exists(key.substring(0, separator)))
+            {
+                return key.substring(0, separator);
+            }
+
+            return NONE;
+        });
+
+        return language.equals(NONE) ? null : language;
+    }
+
+    private boolean exists(String language)
+    {
+        if (new File(folder, language + ".yml").exists())
+        {
+            return true;
+        }
+
+        return resources.contains(folderName + "/" + language + ".yml");
+    }
+
+    /**
+     * Read a bundle and keep only its messages, without the tree they were parsed into.
+     */
+    private Map<String, String> load(String language)
+    {
+        OperationTimer timer = StorageMetrics.start(metricsName, "read");
+        try
+        {
+            YamlConfiguration yaml;
+            File file = new File(folder, language + ".yml");
+            if (file.exists())
+            {
+                yaml = YamlConfiguration.loadConfiguration(file);
+            }
+            else
+            {
+                //Only the flattened messages are kept, so the bundle's tree is parsed without being cached.
+                yaml = resources.loadYaml(folderName + "/" + language + ".yml");
+                if (yaml == null)
+                {
+                    return Collections.emptyMap();
+                }
+            }
+
+            Map<String, String> messages = new HashMap<>();
+            for (String key : yaml.getKeys(true))
+            {
+                if (yaml.isString(key))
+                {
+                    messages.put(key.intern(), yaml.getString(key).intern());
+                }
+            }
+
+            return messages;
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Drop a bundle once no player online uses it anymore.
+     */
+    private void release(String language)
+    {
+        if (!players.containsValue(language))
+        {
+            bundles.remove(language);
+        }
+    }
+}
@@ -19,6 +19,8 @@ import java.util.regex.Pattern;
 public class Locale extends YamlManager
 {
     private final String fileName;
+    private int timeCache;
+    private TimeFormatter timeFormatter;
 
     /**
      * JavaPlugin and name of file will give back a fully updated YamlConfiguration.
@@ -30,6 +32,8 @@ public class Locale extends YamlManager
         super(plugin, folderName, fileName);
 
         this.fileName = fileName;
+        this.timeCache = TimeFormatter.DEFAULT_CACHE_SECONDS;
+        this.timeFormatter = new TimeFormatter(this, timeCache);
     }
 
     /**
@@ -38,6 +42,7 @@ public class Locale extends YamlManager
     public void reload()
     {
         this.yaml = read(fileName);
+        this.timeFormatter = new TimeFormatter(this, timeCache);
     }
 
     /**
@@ -301,63 +306,63 @@ public class Locale extends YamlManager
         return WordUtils.capitalizeFully(string.toLowerCase().replace("_", " "));
     }
 
+    /**
+     * Format a duration in English, leaving out units that are zero.
+     * @param seconds Duration in seconds.
+     * @return Formatted duration.
+     * @deprecated Use getTimeFormatter() to format in the language of this locale.
+     */
+    @Deprecated
     public static String formatTime(double seconds)
     {
         return formatTime(false, seconds, false);
     }
 
+    /**
+     * Format a duration in English, leaving out units that are zero.
+     * @param seconds Duration in seconds.
+     * @param shortHand Write units compactly.
+     * @return Formatted duration.
+     * @deprecated Use getTimeFormatter() to format in the language of this locale.
+     */
+    @Deprecated
     public static String formatTime(double seconds, boolean shortHand)
     {
         return formatTime(false, seconds, shortHand);
     }
 
+    /**
+     * Format a duration in English.
+     * @param showZero Show units that are zero.
+     * @param rawSeconds Duration in seconds.
+     * @param shortHand Write units compactly.
+     * @return Formatted duration.
+     * @deprecated Use getTimeFormatter() to format in the language of this locale.
+     */
+    @Deprecated
     public static String formatTime(boolean showZero, double rawSeconds, boolean shortHand)
     {
-        if (rawSeconds <= 0)
-        {
-            return "";
-        }
-
-        if (rawSeconds < 1.0)
-        {
-            return String.format("%.1f", rawSeconds) + " Seconds";
-        }
-
-        int seconds = (int)rawSeconds;
-        int hours = seconds / 3600;
-        int minutes = seconds % 3600 / 60;
-        int remainingSeconds = seconds % 60;
-
-        String hourPlural = hours == 1 ? hours + " Hour" : hours + " Hours";
-        String minutePlural = minutes == 1 ? minutes + " Minute" : minutes + " Minutes";
-        String secondPlural = remainingSeconds == 1 ? remainingSeconds + " Second" : remainingSeconds + " Seconds";
-
-        if (shortHand)
-        {
-            hourPlural = hours + "H";
-            minutePlural = minutes + "M";
-            secondPlural = seconds + "S";
-        }
-
-        //Format time to be exact. (I'm picky.)
-        if (hours == 0 & !showZero)
-        {
-            hourPlural = "";
-        }
-        else if (minutes > 0)
-        {
-            hourPlural += ", ";
-        }
+        TimeFormatter.Style style = shortHand ? TimeFormatter.Style.COMPACT : TimeFormatter.Style.LONG;
+        return showZero ? TimeFormatter.ENGLISH.formatAll(rawSeconds, style) :
+                TimeFormatter.ENGLISH.format(rawSeconds, style);
+    }
 
-        if (minutes == 0 & !showZero)
-        {
-            minutePlural = "";
-        }
-        else if (remainingSeconds > 0)
-        {
-            minutePlural += ", ";
-        }
+    /**
+     * Retrieve the formatter writing durations with the unit names of this locale.
+     * @return Time formatter.
+     */
+    public TimeFormatter getTimeFormatter()
+    {
+        return timeFormatter;
+    }
 
-        return hourPlural + minutePlural + secondPlural;
+    /**
+     * Set up to which whole second formatted durations are cached.
+     * @param cacheSeconds Whole seconds cached, or 0 to disable caching.
+     */
+    public void setTimeCache(int cacheSeconds)
+    {
+        this.timeCache = cacheSeconds;
+        this.timeFormatter = new TimeFormatter(this, cacheSeconds);
     }
 }
@@ -0,0 +1,193 @@
+package com.github.rfsmassacre.heavenlibrary.files.configs;
+
+/**
+ * Formats durations into hours, minutes and seconds with unit names taken from a locale.
+ *
+ * Unit names are resolved once when the formatter is built, and text is appended straight into a caller's builder
+ * without any intermediate strings. Whole seconds up to a set limit are rendered only once and cached, since the same
+ * few values are shown to every player on each cooldown update.
+ */
+@SuppressWarnings("unused")
+public class TimeFormatter
+{
+    public static final int DEFAULT_CACHE_SECONDS = 3600;
+
+    /**
+     * English formatter used when no locale is available.
+     */
+    public static final TimeFormatter ENGLISH = new TimeFormatter(", ", " ",
+            new String[]{" Hour", " Minute", " Second"}, new String[]{" Hours", " Minutes", " Seconds"},
+            new String[]{"H", "M", "S"}, DEFAULT_CACHE_SECONDS);
+
+    /**
+     * How units are written.
+     */
+    public enum Style
+    {
+        //1 Hour, 2 Minutes, 3 Seconds
+        LONG,
+        //1H 2M 3S
+        COMPACT
+    }
+
+    private static final int HOURS = 0;
+    private static final int MINUTES = 1;
+    private static final int SECONDS = 2;
+
+    private final String separator;
+    private final String compactSeparator;
+    private final String[] singular;
+    private final String[] plural;
+    private final String[] compact;
+    private final int cacheSeconds;
+    private final String[][] cache;
+
+    /**
+     * Constructor resolving unit names from the time section of a locale, falling back to English for anything
+     * missing.
+     *
+     * @param locale Locale holding the unit names.
+     * @param cacheSeconds Whole seconds up to which rendered text is cached, or 0 to disable caching.
+     */
+    public TimeFormatter(Locale locale, int cacheSeconds)
+    {
+        this(get(locale, "time.separator", ENGLISH.separator),
+                get(locale, "time.compact-separator", ENGLISH.compactSeparator),
+                new String[]{get(locale, "time.hour.singular", ENGLISH.singular[HOURS]),
+                        get(locale, "time.minute.singular", ENGLISH.singular[MINUTES]),
+                        get(locale, "time.second.singular", ENGLISH.singular[SECONDS])},
+                new String[]{get(locale, "time.hour.plural", ENGLISH.plural[HOURS]),
+                        get(locale, "time.minute.plural", ENGLISH.plural[MINUTES]),
+                        get(locale, "time.second.plural", ENGLISH.plural[SECONDS])},
+                new String[]{get(locale, "time.hour.compact", ENGLISH.compact[HOURS]),
+                        get(locale, "time.minute.compact", ENGLISH.compact[MINUTES]),
+                        get(locale, "time.second.compact", ENGLISH.compact[SECONDS])},
+                cacheSeconds);
+    }
+
+    private TimeFormatter(String separator, String compactSeparator, String[] singular, String[] plural,
+                          String[] compact, int cacheSeconds)
+    {
+        this.separator = separator;
+        this.compactSeparator = compactSeparator;
+        this.singular = singular;
+        this.plural = plural;
+        this.compact = compact;
+        this.cacheSeconds = Math.max(0, cacheSeconds);
+        this.cache = new String[Style.values().length][this.cacheSeconds + 1];
+    }
+
+    /**
+     * Format a duration, leaving out units that are zero.
+     *
+     * @param seconds Duration in seconds.
+     * @param style How units are written.
+     * @return Formatted duration, or empty if it is not positive.
+     */
+    public String format(double seconds, Style style)
+    {
+        if (seconds <= 0.0)
+        {
+            return "";
+        }
+
+        int whole = (int) seconds;
+        if (whole == seconds && whole <= cacheSeconds)
+        {
+            String[] rendered = cache[style.ordinal()];
+            String text = rendered[whole];
+            if (text == null)
+            {
+                //Racing threads render the same text, so whichever wins is fine.
+                text = append(new StringBuilder(32), seconds, style, false).toString();
+                rendered[whole] = text;
+            }
+
+            return text;
+        }
+
+        return append(new StringBuilder(32), seconds, style, false).toString();
+    }
+
+    /**
+     * Format a duration, showing every unit even when it is zero.
+     *
+     * @param seconds Duration in seconds.
+     * @param style How units are written.
+     * @return Formatted duration, or empty if it is not positive.
+     */
+    public String formatAll(double seconds, Style style)
+    {
+        if (seconds <= 0.0)
+        {
+            return "";
+        }
+
+        return append(new StringBuilder(32), seconds, style, true).toString();
+    }
+
+    /**
+     * Append a formatted duration to a builder. Nothing is appended if the duration is not positive.
+     *
+     * @param builder Builder to append to, which can be reused between calls.
+     * @param rawSeconds Duration in seconds. Anything under a second is written with one decimal.
+     * @param style How units are written.
+     * @param showZero Show units that are zero.
+     * @return The same builder.
+     */
+    public StringBuilder append(StringBuilder builder, double rawSeconds, Style style, boolean showZero)
+    {
+        if (rawSeconds <= 0.0)
+        {
+            return builder;
+        }
+
+        if (rawSeconds < 1.0)
+        {
+            //Tenths are written by hand instead of through String.format.
+            int tenths = (int) Math.round(rawSeconds * 10.0);
+            builder.append(tenths / 10).append('.').append(tenths % 10);
+            return builder.append(style == Style.COMPACT ? compact[SECONDS] : plural[SECONDS]);
+        }
+
+        int seconds = (int) rawSeconds;
+        int hours = seconds / 3600;
+        int minutes = seconds % 3600 / 60;
+        int remainingSeconds = seconds % 60;
+
+        int start = builder.length();
+        unit(builder, start, hours, HOURS, style, showZero);
+        unit(builder, start, minutes, MINUTES, style, showZero);
+        unit(builder, start, remainingSeconds, SECONDS, style, showZero || builder.length() == start);
+        return builder;
+    }
+
+    private void unit(StringBuilder builder, int start, int amount, int unit, Style style, boolean showZero)
+    {
+        if (amount == 0 && !showZero)
+        {
+            return;
+        }
+
+        if (builder.length() > start)
+        {
+            builder.append(style == Style.COMPACT ? compactSeparator : separator);
+        }
+
+        builder.append(amount);
+        if (style == Style.COMPACT)
+        {
+            builder.append(compact[unit]);
+        }
+        else
+        {
+            builder.append(amount == 1 ? singular[unit] : plural[unit]);
+        }
+    }
+
+    private static String get(Locale locale, String key, String fallback)
+    {
+        String value = locale.getMessage(key);
+        return value.isEmpty() ? fallback : value;
+    }
+}
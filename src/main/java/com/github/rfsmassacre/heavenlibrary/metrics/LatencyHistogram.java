@@ -0,0 +1,159 @@
+package com.github.rfsmassacre.heavenlibrary.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets.
+ *
+ * Every power of two is split into 8 linear sub buckets, so any recorded value is known within 12.5% while the whole
+ * range of a long fits in 488 counters. Recording is a handful of atomic increments and never allocates.
+ */
+@SuppressWarnings("unused")
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder total;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    public LatencyHistogram()
+    {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.total = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Record a single value.
+     *
+     * @param value Value in nanoseconds. Negative values count as zero.
+     */
+    public void record(long value)
+    {
+        if (value < 0)
+        {
+            value = 0;
+        }
+
+        counts.incrementAndGet(index(value));
+        total.increment();
+        sum.add(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+        {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Amount of values recorded.
+     *
+     * @return Amount of values.
+     */
+    public long getCount()
+    {
+        return total.sum();
+    }
+
+    /**
+     * Highest value recorded.
+     *
+     * @return Value in nanoseconds.
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Average of every value recorded.
+     *
+     * @return Value in nanoseconds.
+     */
+    public long getMean()
+    {
+        long count = total.sum();
+        return count == 0 ? 0 : sum.sum() / count;
+    }
+
+    /**
+     * Estimate the value below which the given percentage of values fall.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return Upper bound of the bucket the percentile lands in, in nanoseconds.
+     */
+    public long getPercentile(double percentile)
+    {
+        long count = 0;
+        for (int index = 0; index < BUCKETS; index++)
+        {
+            count += counts.get(index);
+        }
+
+        if (count == 0)
+        {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(count * Math.min(100.0, percentile) / 100.0));
+        long seen = 0;
+        for (int index = 0; index < BUCKETS; index++)
+        {
+            seen += counts.get(index);
+            if (seen >= target)
+            {
+                long upper = index + 1 < BUCKETS ? lowerBound(index + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upper, max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Forget every recorded value. Values recorded at the same time may or may not survive.
+     */
+    public void reset()
+    {
+        for (int index = 0; index < BUCKETS; index++)
+        {
+            counts.set(index, 0);
+        }
+
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int index(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBound(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.rfsmassacre.heavenlibrary.metrics;
+
+import org.bukkit.Bukkit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Opt-in warning for storage and database operations that block the server thread for too long.
+ *
+ * Every measured operation is checked when it finishes. Those over the threshold that ran on the primary thread are
+ * logged with the stack of whoever called them. Each call site is only reported once per cooldown, with a count of how
+ * many times it happened in between.
+ */
+@SuppressWarnings("unused")
+public final class MainThreadGuard
+{
+    private static final String LIBRARY_PACKAGE = "com.github.rfsmassacre.heavenlibrary.";
+    private static final int MAX_FRAMES = 12;
+
+    private static final Map<String, Report> REPORTS = new ConcurrentHashMap<>();
+    private static volatile boolean enabled;
+    private static volatile long thresholdNanos;
+    private static volatile long cooldownNanos;
+    private static volatile Logger logger;
+
+    private MainThreadGuard()
+    {
+        //Do nothing. Utility class.
+    }
+
+    /**
+     * Start warning about slow operations on the primary thread.
+     *
+     * @param logger Logger to write warnings to.
+     * @param thresholdMillis Operations taking longer than this are reported.
+     * @param cooldownSeconds Time before the same call site is reported again.
+     */
+    public static void enable(Logger logger, long thresholdMillis, long cooldownSeconds)
+    {
+        MainThreadGuard.logger = logger;
+        MainThreadGuard.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        MainThreadGuard.cooldownNanos = TimeUnit.SECONDS.toNanos(cooldownSeconds);
+        MainThreadGuard.enabled = true;
+    }
+
+    /**
+     * Stop warning and forget every call site reported so far.
+     */
+    public static void disable()
+    {
+        enabled = false;
+        REPORTS.clear();
+    }
+
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Check a finished operation. Has to be called from the thread that ran it.
+     *
+     * @param source Name of the manager, folder or table.
+     * @param operation Name of the operation.
+     * @param elapsedNanos Time the operation took.
+     */
+    static void check(String source, String operation, long elapsedNanos)
+    {
+        if (!enabled || elapsedNanos < thresholdNanos || !Bukkit.isPrimaryThread())
+        {
+            return;
+        }
+
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        int caller = 0;
+        while (caller < stack.length && stack[caller].getClassName().startsWith(LIBRARY_PACKAGE))
+        {
+            caller++;
+        }
+
+        String callSite = caller < stack.length ? stack[caller].toString() : "unknown";
+        String key = source + " " + operation + " " + callSite;
+        Report report = REPORTS.computeIfAbsent(key, (ignored) -> new Report());
+        long now = System.nanoTime();
+        long last = report.lastLogged.get();
+        if (last != 0 && now - last < cooldownNanos)
+        {
+            report.suppressed.incrementAndGet();
+            return;
+        }
+
+        if (!report.lastLogged.compareAndSet(last, now))
+        {
+            report.suppressed.incrementAndGet();
+            return;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(source).append(' ').append(operation).append(" took ")
+                .append(String.format("%.1f", elapsedNanos / 1_000_000.0)).append("ms on the main thread");
+        long suppressed = report.suppressed.getAndSet(0);
+        if (suppressed > 0)
+        {
+            builder.append(" (").append(suppressed).append(" more since last warning)");
+        }
+
+        for (int frame = caller; frame < stack.length && frame < caller + MAX_FRAMES; frame++)
+        {
+            builder.append("\n    at ").append(stack[frame]);
+        }
+
+        logger.warning(builder.toString());
+    }
+
+    private static final class Report
+    {
+        private final AtomicLong lastLogged = new AtomicLong();
+        private final AtomicLong suppressed = new AtomicLong();
+    }
+}
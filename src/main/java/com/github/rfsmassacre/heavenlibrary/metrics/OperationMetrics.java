@@ -0,0 +1,86 @@
+package com.github.rfsmassacre.heavenlibrary.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, throughput and errors of one operation on one store, such as reads on a folder or queries on a table.
+ */
+@SuppressWarnings("unused")
+public class OperationMetrics
+{
+    private final String source;
+    private final String operation;
+    private final LatencyHistogram latency;
+    private final LongAdder errors;
+    private volatile long since;
+
+    OperationMetrics(String source, String operation)
+    {
+        this.source = source;
+        this.operation = operation;
+        this.latency = new LatencyHistogram();
+        this.errors = new LongAdder();
+        this.since = System.nanoTime();
+    }
+
+    /**
+     * Record one finished operation.
+     *
+     * @param nanos Time it took in nanoseconds.
+     * @param failed Whether it ended in an error.
+     */
+    public void record(long nanos, boolean failed)
+    {
+        latency.record(nanos);
+        if (failed)
+        {
+            errors.increment();
+        }
+    }
+
+    public String getSource()
+    {
+        return source;
+    }
+
+    public String getOperation()
+    {
+        return operation;
+    }
+
+    public LatencyHistogram getLatency()
+    {
+        return latency;
+    }
+
+    public long getCount()
+    {
+        return latency.getCount();
+    }
+
+    public long getErrors()
+    {
+        return errors.sum();
+    }
+
+    /**
+     * Average operations per second since creation or the last reset.
+     *
+     * @return Operations per second.
+     */
+    public double getThroughput()
+    {
+        double seconds = (System.nanoTime() - since) / 1_000_000_000.0;
+        return seconds <= 0 ? 0 : getCount() / seconds;
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset()
+    {
+        latency.reset();
+        errors.reset();
+        this.since = System.nanoTime();
+    }
+}
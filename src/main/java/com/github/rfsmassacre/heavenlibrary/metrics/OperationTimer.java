@@ -0,0 +1,38 @@
+package com.github.rfsmassacre.heavenlibrary.metrics;
+
+/**
+ * Measures a single operation from creation until stopped.
+ */
+public class OperationTimer
+{
+    private final OperationMetrics metrics;
+    private final long start;
+    private boolean failed;
+
+    OperationTimer(OperationMetrics metrics)
+    {
+        this.metrics = metrics;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Mark operation as failed.
+     */
+    public void fail()
+    {
+        this.failed = true;
+    }
+
+    /**
+     * Stop measuring and record the result.
+     *
+     * @return Time the operation took in nanoseconds.
+     */
+    public long stop()
+    {
+        long elapsed = System.nanoTime() - start;
+        metrics.record(elapsed, failed);
+        MainThreadGuard.check(metrics.getSource(), metrics.getOperation(), elapsed);
+        return elapsed;
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.rfsmassacre.heavenlibrary.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how long every storage and database operation takes, grouped by store and operation.
+ */
+@SuppressWarnings("unused")
+public final class StorageMetrics
+{
+    private static final Map<String, Map<String, OperationMetrics>> METRICS = new ConcurrentHashMap<>();
+
+    private StorageMetrics()
+    {
+        //Do nothing. Utility class.
+    }
+
+    /**
+     * Start measuring an operation.
+     *
+     * @param source Name of the manager, folder or table.
+     * @param operation Name of the operation, such as read or query.
+     * @return Timer to stop once the operation is done.
+     */
+    public static OperationTimer start(String source, String operation)
+    {
+        return new OperationTimer(get(source, operation));
+    }
+
+    /**
+     * Retrieve metrics of an operation, creating them if needed.
+     *
+     * @param source Name of the manager, folder or table.
+     * @param operation Name of the operation.
+     * @return Operation metrics.
+     */
+    public static OperationMetrics get(String source, String operation)
+    {
+        Map<String, OperationMetrics> operations = METRICS.get(source);
+        if (operations == null)
+        {
+            operations = METRICS.computeIfAbsent(source, (key) -> new ConcurrentHashMap<>());
+        }
+
+        OperationMetrics metrics = operations.get(operation);
+        if (metrics == null)
+        {
+            metrics = operations.computeIfAbsent(operation, (key) -> new OperationMetrics(source, key));
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Retrieve metrics of every operation recorded so far.
+     *
+     * @return Operation metrics sorted by source then operation.
+     */
+    public static List<OperationMetrics> all()
+    {
+        List<OperationMetrics> all = new ArrayList<>();
+        for (Map<String, OperationMetrics> operations : METRICS.values())
+        {
+            all.addAll(operations.values());
+        }
+
+        all.sort(Comparator.comparing(OperationMetrics::getSource).thenComparing(OperationMetrics::getOperation));
+        return all;
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public static void reset()
+    {
+        for (OperationMetrics metrics : all())
+        {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Describe metrics of every operation that ran at least once, one line each.
+     *
+     * @return Lines of text.
+     */
+    public static List<String> summary()
+    {
+        List<String> lines = new ArrayList<>();
+        for (OperationMetrics metrics : all())
+        {
+            if (metrics.getCount() == 0)
+            {
+                continue;
+            }
+
+            LatencyHistogram latency = metrics.getLatency();
+            lines.add(String.format("%s %s: %d ops (%.1f/s), %d errors, p50 %s, p99 %s, max %s",
+                    metrics.getSource(), metrics.getOperation(), metrics.getCount(), metrics.getThroughput(),
+                    metrics.getErrors(), duration(latency.getPercentile(50)), duration(latency.getPercentile(99)),
+                    duration(latency.getMax())));
+        }
+
+        return lines;
+    }
+
+    private static String duration(long nanos)
+    {
+        if (nanos >= 1_000_000)
+        {
+            return String.format("%.1fms", nanos / 1_000_000.0);
+        }
+
+        return String.format("%.1fus", nanos / 1_000.0);
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.rfsmassacre.heavenlibrary.startup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Single step of plugin startup and the value it produces.
+ *
+ * @param <T> Type of value produced.
+ */
+@SuppressWarnings("unused")
+public class Phase<T>
+{
+    private final String name;
+    private final CompletableFuture<T> future;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    Phase(String name)
+    {
+        this.name = name;
+        this.future = new CompletableFuture<>();
+    }
+
+    /**
+     * Wait for phase to finish and retrieve its value. Phases can call this freely on the phases they depend on.
+     *
+     * @return Value produced by the phase.
+     * @throws CompletionException If the phase or one of its dependencies failed.
+     */
+    public T get()
+    {
+        return future.join();
+    }
+
+    /**
+     * Future completed with the value of this phase.
+     *
+     * @return Future.
+     */
+    public CompletableFuture<T> getFuture()
+    {
+        return future;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Time spent running the phase itself, not waiting on dependencies.
+     *
+     * @return Duration in nanoseconds or 0 if it never ran.
+     */
+    public long getDurationNanos()
+    {
+        return endNanos > startNanos ? endNanos - startNanos : 0;
+    }
+
+    long getStartNanos()
+    {
+        return startNanos;
+    }
+
+    long getEndNanos()
+    {
+        return endNanos;
+    }
+
+    void start()
+    {
+        this.startNanos = System.nanoTime();
+    }
+
+    void complete(T t)
+    {
+        this.endNanos = System.nanoTime();
+        future.complete(t);
+    }
+
+    void fail(Throwable throwable)
+    {
+        this.endNanos = System.nanoTime();
+        future.completeExceptionally(throwable);
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.rfsmassacre.heavenlibrary.startup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs independent startup phases in parallel off the main thread.
+ *
+ * Each phase starts as soon as the phases it declares as dependencies finish. The main thread only waits on the
+ * phases it needs before the first tick, and a timing breakdown is logged once every phase is done.
+ *
+ * Bukkit's async scheduler does not start tasks until the server ticks, so phases run on a pool of their own.
+ */
+@SuppressWarnings("unused")
+public class StartupOrchestrator
+{
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final List<Phase<?>> phases;
+    private final long startNanos;
+    private long waitedNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param logger Logger to write the timing breakdown to.
+     * @param threads Amount of phases allowed to run at the same time.
+     */
+    public StartupOrchestrator(Logger logger, int threads)
+    {
+        AtomicInteger count = new AtomicInteger();
+        this.logger = logger;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), (runnable) ->
+        {
+            Thread thread = new Thread(runnable, "Startup-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.phases = new ArrayList<>();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Schedule phase to run once all of its dependencies have finished.
+     *
+     * @param name Name shown in the timing breakdown.
+     * @param task Work producing the value of the phase.
+     * @param dependencies Phases that have to finish first.
+     * @param <T> Type of value produced.
+     * @return Phase.
+     */
+    public <T> Phase<T> phase(String name, Callable<T> task, Phase<?>... dependencies)
+    {
+        Phase<T> phase = new Phase<>(name);
+        phases.add(phase);
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[dependencies.length];
+        for (int index = 0; index < dependencies.length; index++)
+        {
+            futures[index] = dependencies[index].getFuture();
+        }
+
+        CompletableFuture.allOf(futures).whenCompleteAsync((ignored, throwable) ->
+        {
+            if (throwable != null)
+            {
+                phase.fail(throwable instanceof CompletionException ? throwable.getCause() : throwable);
+                return;
+            }
+
+            phase.start();
+            try
+            {
+                phase.complete(task.call());
+            }
+            catch (Throwable exception)
+            {
+                phase.fail(exception);
+            }
+        }, executor);
+
+        return phase;
+    }
+
+    /**
+     * Block the calling thread until the given phases finish.
+     *
+     * @param required Phases needed before continuing.
+     * @throws CompletionException If any of the phases failed.
+     */
+    public void await(Phase<?>... required)
+    {
+        long start = System.nanoTime();
+        try
+        {
+            for (Phase<?> phase : required)
+            {
+                phase.get();
+            }
+        }
+        finally
+        {
+            waitedNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Log the timing breakdown once every phase is done and release the threads.
+     *
+     * @return Future completed when every phase is done, exceptionally if any of them failed.
+     */
+    public CompletableFuture<Void> finish()
+    {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[phases.size()];
+        for (int index = 0; index < phases.size(); index++)
+        {
+            futures[index] = phases.get(index).getFuture();
+        }
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures);
+        all.whenComplete((ignored, throwable) ->
+        {
+            executor.shutdown();
+            logBreakdown();
+        });
+
+        return all;
+    }
+
+    private void logBreakdown()
+    {
+        long end = startNanos;
+        StringBuilder builder = new StringBuilder("Startup breakdown:");
+        for (Phase<?> phase : phases)
+        {
+            end = Math.max(end, phase.getEndNanos());
+            builder.append("\n  ").append(phase.getName()).append(": ");
+            if (phase.getFuture().isCompletedExceptionally())
+            {
+                builder.append("FAILED");
+                continue;
+            }
+
+            builder.append(millis(phase.getDurationNanos())).append("ms (started at +")
+                    .append(millis(phase.getStartNanos() - startNanos)).append("ms)");
+        }
+
+        builder.append("\n  main thread blocked: ").append(millis(waitedNanos)).append("ms, all phases done: ")
+                .append(millis(end - startNanos)).append("ms");
+        logger.log(Level.INFO, builder.toString());
+    }
+
+    private static long millis(long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}